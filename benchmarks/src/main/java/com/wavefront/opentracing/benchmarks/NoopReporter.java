@@ -0,0 +1,26 @@
+package com.wavefront.opentracing.benchmarks;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.reporting.Reporter;
+
+/**
+ * Reporter that discards every span. Isolates the cost of the span lifecycle from the cost of
+ * reporting.
+ */
+public class NoopReporter implements Reporter {
+
+  @Override
+  public void report(WavefrontSpan span) {
+    // no-op
+  }
+
+  @Override
+  public int getFailureCount() {
+    return 0;
+  }
+
+  @Override
+  public void close() {
+    // no-op
+  }
+}
@@ -0,0 +1,82 @@
+package com.wavefront.opentracing.benchmarks;
+
+import com.wavefront.opentracing.WavefrontScopeManager;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.application.ApplicationTags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+import io.opentracing.util.ThreadLocalScopeManager;
+
+/**
+ * Measures nested span activations: each span is activated in turn, the active span is looked up
+ * at every level the way {@code WavefrontSpanBuilder} does on span start, and the scopes are
+ * closed in reverse order. Compares the default {@link ThreadLocalScopeManager} with the
+ * {@link WavefrontScopeManager}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScopeManagerBenchmark {
+
+  @Param({"threadLocal", "wavefront"})
+  public String scopeManager;
+
+  @Param({"1", "2", "5", "10"})
+  public int depth;
+
+  private WavefrontTracer tracer;
+  private Span[] spans;
+  private io.opentracing.Scope[] scopes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ScopeManager manager = "wavefront".equals(scopeManager) ?
+        new WavefrontScopeManager() : new ThreadLocalScopeManager();
+    ApplicationTags applicationTags = new ApplicationTags.Builder("benchmarkApplication",
+        "benchmarkService").build();
+    tracer = new WavefrontTracer.Builder(new NoopReporter(), applicationTags).
+        excludeJvmMetrics().withScopeManager(manager).build();
+    spans = new Span[depth];
+    for (int i = 0; i < depth; i++) {
+      spans[i] = tracer.buildSpan("operation" + i).ignoreActiveSpan().start();
+    }
+    scopes = new io.opentracing.Scope[depth];
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    tracer.close();
+  }
+
+  @Benchmark
+  public void nestedActivations(Blackhole blackhole) {
+    for (int i = 0; i < depth; i++) {
+      scopes[i] = tracer.activateSpan(spans[i]);
+      blackhole.consume(tracer.activeSpan());
+    }
+    for (int i = depth - 1; i >= 0; i--) {
+      scopes[i].close();
+    }
+  }
+}
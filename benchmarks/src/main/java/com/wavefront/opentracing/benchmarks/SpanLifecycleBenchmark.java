@@ -0,0 +1,141 @@
+package com.wavefront.opentracing.benchmarks;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.tracing.sampling.ConstantSampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+/**
+ * Measures the full span lifecycle on the request path: {@code WavefrontTracer.buildSpan} →
+ * {@code WavefrontSpanBuilder.start} → {@code WavefrontSpan.setTag} → {@code finish}.
+ *
+ * Every benchmark runs against a no-op {@link Reporter} and against a
+ * {@link WavefrontSpanReporter} backed by a {@link StubWavefrontSender}. Run with
+ * {@code -prof gc} to get the per-span allocation figures ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpanLifecycleBenchmark {
+
+  @Param({"noop", "wavefront"})
+  public String reporter;
+
+  private WavefrontTracer tracer;
+  private WavefrontTracer sampledOutTracer;
+  private WavefrontSpanContext parentContext;
+  private WavefrontSpanContext parentContextWithBaggage;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ApplicationTags applicationTags = new ApplicationTags.Builder("benchmarkApplication",
+        "benchmarkService").cluster("us-west-1").shard("primary").build();
+    tracer = new WavefrontTracer.Builder(newReporter(), applicationTags).
+        excludeJvmMetrics().build();
+    sampledOutTracer = new WavefrontTracer.Builder(newReporter(), applicationTags).
+        excludeJvmMetrics().withSampler(new ConstantSampler(false)).build();
+
+    parentContext = new WavefrontSpanContext(UUID.randomUUID(), UUID.randomUUID(), null,
+        Boolean.TRUE);
+    Map<String, String> baggage = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      baggage.put("baggage-key-" + i, "baggage-value-" + i);
+    }
+    parentContextWithBaggage = new WavefrontSpanContext(UUID.randomUUID(), UUID.randomUUID(),
+        baggage, Boolean.TRUE);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    tracer.close();
+    sampledOutTracer.close();
+  }
+
+  private Reporter newReporter() {
+    if ("wavefront".equals(reporter)) {
+      return new WavefrontSpanReporter.Builder().withSource("benchmark").
+          withMaxQueueSize(1_000_000).build(new StubWavefrontSender());
+    }
+    return new NoopReporter();
+  }
+
+  @Benchmark
+  public Span rootSpan() {
+    Span span = tracer.buildSpan("rootOperation").ignoreActiveSpan().start();
+    setTags(span);
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public Span childSpan() {
+    Span span = tracer.buildSpan("childOperation").asChildOf(parentContext).start();
+    setTags(span);
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public Span childSpanWithBuilderTags() {
+    Span span = tracer.buildSpan("childOperation").asChildOf(parentContext).
+        withTag(Tags.COMPONENT.getKey(), "jaxrs").
+        withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER).
+        withTag(Tags.HTTP_METHOD.getKey(), "GET").start();
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public Span spanWithBaggage() {
+    Span span = tracer.buildSpan("baggageOperation").asChildOf(parentContextWithBaggage).
+        start();
+    span.setBaggageItem("request-type", "mobile");
+    setTags(span);
+    span.finish();
+    return span;
+  }
+
+  @Benchmark
+  public Span sampledOutSpan() {
+    Span span = sampledOutTracer.buildSpan("sampledOutOperation").ignoreActiveSpan().start();
+    setTags(span);
+    span.finish();
+    return span;
+  }
+
+  private static void setTags(Span span) {
+    Tags.COMPONENT.set(span, "jaxrs");
+    Tags.SPAN_KIND.set(span, Tags.SPAN_KIND_SERVER);
+    Tags.HTTP_METHOD.set(span, "GET");
+    Tags.HTTP_URL.set(span, "http://localhost:8080/api/v2/orders");
+    Tags.HTTP_STATUS.set(span, 200);
+    span.setTag("customer.premium", true);
+  }
+}
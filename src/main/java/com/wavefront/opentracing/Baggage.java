@@ -0,0 +1,247 @@
+package com.wavefront.opentracing;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An immutable map of baggage items that shares structure between the contexts of a trace.
+ *
+ * Items are held in a base map that is never modified plus a short chain of items added on top of
+ * it. Adding an item links a new node onto the chain instead of copying the map, and the chain is
+ * folded into a new base map once it grows beyond {@link #MAX_CHAIN_LENGTH}. Adding an item that
+ * is already present with the same value returns the same instance.
+ *
+ * Iteration follows the base map's order followed by the added items in insertion order, and
+ * replacing the value of an item keeps its position.
+ */
+@Immutable
+final class Baggage extends AbstractMap<String, String> {
+
+  static final Baggage EMPTY = new Baggage(Collections.emptyMap(), null, 0, 0);
+
+  /**
+   * The number of chained items after which they are folded into a new base map, bounding the
+   * cost of lookups.
+   */
+  static final int MAX_CHAIN_LENGTH = 8;
+
+  private final Map<String, String> base;
+  /** The most recently added item, linked to the items added before it. */
+  @Nullable
+  private final Link head;
+  private final int chainLength;
+  private final int size;
+
+  private Baggage(Map<String, String> base, @Nullable Link head, int chainLength, int size) {
+    this.base = base;
+    this.head = head;
+    this.chainLength = chainLength;
+    this.size = size;
+  }
+
+  /**
+   * Wraps the given items without copying them. The caller must not modify the map afterwards.
+   *
+   * @param items the baggage items, can be null
+   * @return the baggage
+   */
+  static Baggage of(@Nullable Map<String, String> items) {
+    if (items instanceof Baggage) {
+      return (Baggage) items;
+    }
+    if (items == null || items.isEmpty()) {
+      return EMPTY;
+    }
+    return new Baggage(items, null, 0, items.size());
+  }
+
+  /**
+   * Returns baggage with the given item added or replaced, sharing the items of this instance.
+   *
+   * @param key the item key
+   * @param value the item value
+   * @return the new baggage, or this instance if it already holds the item
+   */
+  Baggage with(String key, @Nullable String value) {
+    Link link = find(key);
+    boolean present;
+    if (link != null) {
+      present = true;
+      if (Objects.equals(link.value, value)) {
+        return this;
+      }
+    } else {
+      present = base.containsKey(key);
+      if (present && Objects.equals(base.get(key), value)) {
+        return this;
+      }
+    }
+    int newSize = present ? size : size + 1;
+    if (chainLength == MAX_CHAIN_LENGTH) {
+      Map<String, String> items = new LinkedHashMap<>(this);
+      items.put(key, value);
+      return new Baggage(items, null, 0, newSize);
+    }
+    return new Baggage(base, new Link(key, value, head), chainLength + 1, newSize);
+  }
+
+  @Nullable
+  private Link find(Object key) {
+    for (Link link = head; link != null; link = link.next) {
+      if (Objects.equals(link.key, key)) {
+        return link;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String get(Object key) {
+    Link link = find(key);
+    return link != null ? link.value : base.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return find(key) != null || base.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<Entry<String, String>>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private final class EntryIterator implements Iterator<Entry<String, String>> {
+    private final Iterator<Entry<String, String>> baseIterator = base.entrySet().iterator();
+    /** Keys of chained items that are not in the base map, in insertion order. */
+    private final String[] addedKeys;
+    private final int addedCount;
+    private int addedIndex = 0;
+
+    EntryIterator() {
+      String[] keys = new String[chainLength];
+      int count = 0;
+      Link[] oldestFirst = new Link[chainLength];
+      int i = chainLength;
+      for (Link link = head; link != null; link = link.next) {
+        oldestFirst[--i] = link;
+      }
+      for (Link link : oldestFirst) {
+        if (!base.containsKey(link.key) && !contains(keys, count, link.key)) {
+          keys[count++] = link.key;
+        }
+      }
+      this.addedKeys = keys;
+      this.addedCount = count;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return baseIterator.hasNext() || addedIndex < addedCount;
+    }
+
+    @Override
+    public Entry<String, String> next() {
+      if (baseIterator.hasNext()) {
+        Entry<String, String> entry = baseIterator.next();
+        Link link = find(entry.getKey());
+        return link != null ? link :
+            new SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+      }
+      if (addedIndex < addedCount) {
+        return find(addedKeys[addedIndex++]);
+      }
+      throw new NoSuchElementException();
+    }
+  }
+
+  private static boolean contains(String[] keys, int count, String key) {
+    for (int i = 0; i < count; i++) {
+      if (Objects.equals(keys[i], key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A chained item, which also serves as its own immutable map entry.
+   */
+  private static final class Link implements Entry<String, String> {
+    private final String key;
+    @Nullable
+    private final String value;
+    @Nullable
+    private final Link next;
+
+    Link(String key, @Nullable String value, @Nullable Link next) {
+      this.key = key;
+      this.value = value;
+      this.next = next;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public String getValue() {
+      return value;
+    }
+
+    @Override
+    public String setValue(String value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry<?, ?> e = (Entry<?, ?>) o;
+      return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(key) ^ Objects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + value;
+    }
+  }
+}
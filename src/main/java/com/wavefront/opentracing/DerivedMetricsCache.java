@@ -0,0 +1,630 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Counter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.WavefrontHistogram;
+import com.wavefront.opentracing.clock.Clock;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.common.application.ApplicationTags;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import static com.wavefront.sdk.common.Constants.APPLICATION_TAG_KEY;
+import static com.wavefront.sdk.common.Constants.CLUSTER_TAG_KEY;
+import static com.wavefront.sdk.common.Constants.COMPONENT_TAG_KEY;
+import static com.wavefront.sdk.common.Constants.SERVICE_TAG_KEY;
+import static com.wavefront.sdk.common.Constants.SHARD_TAG_KEY;
+
+/**
+ * Bounded cache of the RED metric handles derived from spans, keyed by (application, service,
+ * cluster, shard, operation, component).
+ *
+ * Entries hold the sanitized metric names and the counters and histogram already resolved from
+ * the derived metrics registry. Lookups use a per-thread reusable key, so a cache hit does not
+ * allocate. Once the cache is full, handles for new keys are resolved from the registry on every
+ * lookup without being cached.
+ *
+ * Cached entries accumulate updates in striped cells instead of updating the shared counters and
+ * histogram for every span. The cells are merged into the registry handles when the cache is
+ * flushed, which happens periodically once the cache is started. Like the cells of a
+ * {@link java.util.concurrent.atomic.LongAdder}, a thread picks a stripe by a per-thread probe
+ * and moves on to another stripe when the one it picked is locked by another thread. Stripes are
+ * padded, so that threads finishing spans of the same operation do not contend on the same
+ * memory.
+ *
+ * Durations of cached entries are merged into a {@link LogLinearHistogram} per minute in which
+ * they were recorded, like the minute bins of a {@link WavefrontHistogram}, instead of being
+ * reported by the registry. Each flush sends the distributions of the minutes that have closed
+ * since the previous flush, once each. Durations that reach a stripe's buffer after their minute
+ * was sent are added to the next minute. A histogram holds the buckets of the powers of two it
+ * recorded values in, 256 bytes each.
+ */
+class DerivedMetricsCache {
+  private static final Logger logger = Logger.getLogger(DerivedMetricsCache.class.getName());
+
+  private static final Pattern WHITESPACE = Pattern.compile("[\\s]+");
+
+  private final static String INVOCATION_SUFFIX = ".invocation";
+  private final static String ERROR_SUFFIX = ".error";
+  private final static String TOTAL_TIME_SUFFIX = ".total_time.millis";
+  private final static String DURATION_SUFFIX = ".duration.micros";
+  private final static String OPERATION_NAME_TAG = "operationName";
+
+  // stripes per entry, a power of two
+  private static final int STRIPES = Math.min(64,
+      Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1)) << 1);
+  // durations buffered by a stripe before they are added to the histogram
+  private static final int STRIPE_DURATIONS = 32;
+  // the stripe index of each thread, shared by all entries
+  private static final ThreadLocal<Probe> probe = ThreadLocal.withInitial(Probe::new);
+
+  private static final String DISTRIBUTION_PREFIX = "tracing.derived.";
+  // same as the sanitization of metric names by the derived metrics reporter
+  private static final Pattern INVALID_METRIC_NAME_CHARS = Pattern.compile("[^a-zA-Z0-9_.\\-~]");
+  private static final Set<HistogramGranularity> DISTRIBUTION_GRANULARITIES =
+      Collections.unmodifiableSet(EnumSet.of(HistogramGranularity.MINUTE));
+
+  private final WavefrontInternalReporter wfDerivedReporter;
+  private final ApplicationTags applicationTags;
+  private final WavefrontSender wavefrontSender;
+  private final String source;
+  private final Map<String, String> reporterPointTags;
+  private final Clock clock;
+  private final int maxSize;
+  private final ConcurrentHashMap<Key, DerivedMetrics> cache = new ConcurrentHashMap<>();
+  // the last minute whose distributions have been sent, or are being sent
+  private volatile long sentMinute = Long.MIN_VALUE;
+  private final ThreadLocal<Key> lookupKey = ThreadLocal.withInitial(Key::new);
+  @Nullable
+  private ScheduledExecutorService flushService;
+
+  /**
+   * @param wfDerivedReporter the registry of the derived counters
+   * @param applicationTags the default application tags of the spans
+   * @param wavefrontSender the sender of the duration distributions
+   * @param source the source of the duration distributions
+   * @param clock the clock deciding the minute durations are recorded in
+   * @param maxSize the max number of cached entries
+   */
+  DerivedMetricsCache(WavefrontInternalReporter wfDerivedReporter,
+                      ApplicationTags applicationTags, WavefrontSender wavefrontSender,
+                      String source, Clock clock, int maxSize) {
+    this.wfDerivedReporter = wfDerivedReporter;
+    this.applicationTags = applicationTags;
+    this.wavefrontSender = wavefrontSender;
+    this.source = source;
+    this.reporterPointTags = applicationTags.toPointTags();
+    this.clock = clock;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Gets the metric handles for the given span dimensions.
+   */
+  DerivedMetrics get(String application, String service, @Nullable String cluster,
+                     @Nullable String shard, String operationName, String component) {
+    Key key = lookupKey.get();
+    key.set(application, service, cluster, shard, operationName, component);
+    DerivedMetrics metrics = cache.get(key);
+    if (metrics != null) {
+      return metrics;
+    }
+    if (cache.size() >= maxSize) {
+      // not striped, since uncached entries are never flushed
+      return new DerivedMetrics(key, false);
+    }
+    metrics = new DerivedMetrics(key, true);
+    DerivedMetrics existing = cache.putIfAbsent(key.copy(), metrics);
+    return existing == null ? metrics : existing;
+  }
+
+  int size() {
+    return cache.size();
+  }
+
+  /**
+   * Starts flushing the accumulated updates periodically.
+   *
+   * @param periodMillis the flush period, usually the reporting frequency of the derived metrics
+   */
+  synchronized void start(long periodMillis) {
+    if (flushService != null) {
+      return;
+    }
+    flushService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "wavefrontDerivedMetricsFlusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flushService.scheduleAtFixedRate(this::flushQuietly, periodMillis, periodMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Merges the updates accumulated by all cached entries into the registry handles, and sends the
+   * durations of the minutes that have closed since the last flush.
+   */
+  void flush() {
+    flush(currentMinute() - 1);
+  }
+
+  /**
+   * Merges the updates and sends the durations of all minutes up to the given one.
+   */
+  private void flush(long lastMinute) {
+    // durations of minutes sent by previous flushes are added to the first minute not sent yet
+    long firstMinute = sentMinute + 1;
+    if (lastMinute > sentMinute) {
+      // stripes drained by spans after this point add durations of these minutes to the next one
+      sentMinute = lastMinute;
+    }
+    for (DerivedMetrics metrics : cache.values()) {
+      metrics.flush(firstMinute, lastMinute);
+    }
+  }
+
+  private long currentMinute() {
+    return clock.currentTimeMicros() / 60_000_000;
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Error flushing derived metrics", t);
+    }
+  }
+
+  /**
+   * Stops the periodic flush and flushes the pending updates, including the durations of the
+   * current minute.
+   */
+  synchronized void close() {
+    if (flushService != null) {
+      flushService.shutdownNow();
+      flushService = null;
+    }
+    flush(currentMinute());
+  }
+
+  /**
+   * The RED metric handles for one combination of span dimensions.
+   */
+  final class DerivedMetrics {
+    private final Map<String, String> pointTags;
+    private final String invocationMetricName;
+    private final String errorMetricName;
+    private final String totalTimeMetricName;
+    private final String durationMetricName;
+    private final String distributionName;
+    // Durations merged from the stripes by the minute they were recorded in, or null if
+    // durations are recorded by the registry.
+    @Nullable
+    private final ConcurrentHashMap<Long, LogLinearHistogram> durationHistograms;
+    // the histogram durations were last added to, saving the lookup and boxing of its minute
+    @Nullable
+    private volatile MinuteHistogram lastHistogram;
+    @Nullable
+    private volatile Map<String, String> distributionTags;
+    // Resolved on the first update, so that the registry reports no metrics before the first span.
+    @Nullable
+    private volatile Handles handles;
+    // Resolved on the first error only, so that error-free operations do not report error counts.
+    @Nullable
+    private volatile Counter errorCounter;
+    // Created on first use by each stripe, or null if updates are applied directly.
+    @Nullable
+    private final AtomicReferenceArray<Stripe> stripes;
+
+    private DerivedMetrics(Key key, boolean striped) {
+      stripes = striped ? new AtomicReferenceArray<>(STRIPES) : null;
+      durationHistograms = striped ? new ConcurrentHashMap<>() : null;
+
+      // Need to sanitize metric name as application, service and operation names can have spaces
+      // and other invalid metric name characters
+      pointTags = new HashMap<>();
+      pointTags.put(OPERATION_NAME_TAG, key.operationName);
+      pointTags.put(COMPONENT_TAG_KEY, key.component);
+      // If span tag value is different from the default, we need to override the point tag
+      overridePointTag(APPLICATION_TAG_KEY, key.application, applicationTags.getApplication());
+      overridePointTag(SERVICE_TAG_KEY, key.service, applicationTags.getService());
+      overridePointTag(CLUSTER_TAG_KEY, key.cluster, applicationTags.getCluster());
+      overridePointTag(SHARD_TAG_KEY, key.shard, applicationTags.getShard());
+
+      String metricNamePrefix = key.application + "." + key.service + "." + key.operationName;
+      invocationMetricName = sanitize(metricNamePrefix + INVOCATION_SUFFIX);
+      errorMetricName = sanitize(metricNamePrefix + ERROR_SUFFIX);
+      totalTimeMetricName = sanitize(metricNamePrefix + TOTAL_TIME_SUFFIX);
+      durationMetricName = sanitize(metricNamePrefix + DURATION_SUFFIX);
+      distributionName = INVALID_METRIC_NAME_CHARS.matcher(DISTRIBUTION_PREFIX +
+          durationMetricName).replaceAll("_");
+    }
+
+    private void overridePointTag(String key, @Nullable String value,
+                                  @Nullable String defaultValue) {
+      if (!Objects.equals(value, defaultValue)) {
+        pointTags.put(key, value);
+      }
+    }
+
+    /**
+     * Records a finished span.
+     *
+     * @param durationMicros the span duration in microseconds
+     * @param isError whether the span is an error span
+     */
+    void update(long durationMicros, boolean isError) {
+      if (stripes == null) {
+        Handles handles = handles();
+        handles.invocationCounter.inc();
+        if (isError) {
+          errorCounter().inc();
+        }
+        // Convert from micros to millis and add to duration counter
+        handles.totalTimeCounter.inc(durationMicros / 1000);
+        // Support duration in microseconds instead of milliseconds
+        handles.registryHistogram.update(durationMicros);
+        return;
+      }
+      long minute = currentMinute();
+      Stripe stripe = lockStripe();
+      try {
+        if (stripe.durationCount > 0 && stripe.durationMinute != minute) {
+          drain(stripe, sentMinute + 1);
+        }
+        stripe.invocations++;
+        if (isError) {
+          stripe.errors++;
+        }
+        stripe.totalTimeMillis += durationMicros / 1000;
+        stripe.durationMinute = minute;
+        stripe.durations[stripe.durationCount++] = durationMicros;
+        if (stripe.durationCount == STRIPE_DURATIONS) {
+          drain(stripe, sentMinute + 1);
+        }
+      } finally {
+        stripe.unlock();
+      }
+    }
+
+    /**
+     * Locks the stripe of the current thread, moving the thread to another stripe if the stripe
+     * is locked by another thread.
+     */
+    private Stripe lockStripe() {
+      Probe threadProbe = probe.get();
+      for (int tries = 0; ; tries++) {
+        Stripe stripe = stripe(threadProbe.value & (STRIPES - 1));
+        if (stripe.tryLock()) {
+          return stripe;
+        }
+        if (tries == STRIPES) {
+          // every stripe tried was busy, wait for this one
+          stripe.lock();
+          return stripe;
+        }
+        threadProbe.advance();
+      }
+    }
+
+    private Stripe stripe(int index) {
+      Stripe stripe = stripes.get(index);
+      if (stripe == null) {
+        stripes.compareAndSet(index, null, new Stripe());
+        stripe = stripes.get(index);
+      }
+      return stripe;
+    }
+
+    private void flush(long firstMinute, long lastMinute) {
+      if (stripes == null) {
+        return;
+      }
+      for (int i = 0; i < STRIPES; i++) {
+        Stripe stripe = stripes.get(i);
+        if (stripe != null) {
+          stripe.lock();
+          try {
+            drain(stripe, firstMinute);
+          } finally {
+            stripe.unlock();
+          }
+        }
+      }
+      for (Long minute : durationHistograms.keySet()) {
+        if (minute > lastMinute) {
+          continue;
+        }
+        LogLinearHistogram histogram = durationHistograms.remove(minute);
+        if (histogram == null) {
+          // sent by a concurrent flush
+          continue;
+        }
+        MinuteHistogram last = lastHistogram;
+        if (last != null && last.histogram == histogram) {
+          lastHistogram = null;
+        }
+        List<Pair<Double, Integer>> centroids = histogram.drain();
+        if (centroids.isEmpty()) {
+          continue;
+        }
+        try {
+          wavefrontSender.sendDistribution(distributionName, centroids,
+              DISTRIBUTION_GRANULARITIES, TimeUnit.MINUTES.toMillis(minute), source,
+              distributionTags());
+        } catch (IOException e) {
+          logger.log(Level.WARNING, "Error sending duration distribution", e);
+        }
+      }
+    }
+
+    private Map<String, String> distributionTags() {
+      Map<String, String> tags = distributionTags;
+      if (tags == null) {
+        tags = new HashMap<>(reporterPointTags);
+        tags.putAll(pointTags);
+        distributionTags = tags;
+      }
+      return tags;
+    }
+
+    /**
+     * Merges the updates of a stripe, adding its durations to the histogram of the minute they
+     * were recorded in, or of the given minute if that is later.
+     */
+    @GuardedBy("stripe.locked")
+    private void drain(Stripe stripe, long firstMinute) {
+      if (stripe.invocations == 0) {
+        return;
+      }
+      Handles handles = handles();
+      handles.invocationCounter.inc(stripe.invocations);
+      stripe.invocations = 0;
+      if (stripe.errors > 0) {
+        errorCounter().inc(stripe.errors);
+        stripe.errors = 0;
+      }
+      if (stripe.totalTimeMillis > 0) {
+        handles.totalTimeCounter.inc(stripe.totalTimeMillis);
+        stripe.totalTimeMillis = 0;
+      }
+      if (stripe.durationCount > 0) {
+        LogLinearHistogram histogram =
+            histogram(Math.max(stripe.durationMinute, firstMinute));
+        for (int i = 0; i < stripe.durationCount; i++) {
+          histogram.record(stripe.durations[i]);
+        }
+        stripe.durationCount = 0;
+      }
+    }
+
+    private LogLinearHistogram histogram(long minute) {
+      MinuteHistogram last = lastHistogram;
+      if (last != null && last.minute == minute) {
+        return last.histogram;
+      }
+      LogLinearHistogram histogram = durationHistograms.computeIfAbsent(minute,
+          m -> new LogLinearHistogram());
+      lastHistogram = new MinuteHistogram(minute, histogram);
+      return histogram;
+    }
+
+    private Handles handles() {
+      Handles h = handles;
+      if (h == null) {
+        // the registry returns the same metrics if resolved concurrently
+        h = new Handles(
+            wfDerivedReporter.newCounter(new MetricName(invocationMetricName, pointTags)),
+            wfDerivedReporter.newCounter(new MetricName(totalTimeMetricName, pointTags)),
+            durationHistograms != null ? null : wfDerivedReporter.newWavefrontHistogram(
+                new MetricName(durationMetricName, pointTags)));
+        handles = h;
+      }
+      return h;
+    }
+
+    private Counter errorCounter() {
+      Counter counter = errorCounter;
+      if (counter == null) {
+        counter = wfDerivedReporter.newCounter(new MetricName(errorMetricName, pointTags));
+        errorCounter = counter;
+      }
+      return counter;
+    }
+  }
+
+  private static final class MinuteHistogram {
+    private final long minute;
+    private final LogLinearHistogram histogram;
+
+    MinuteHistogram(long minute, LogLinearHistogram histogram) {
+      this.minute = minute;
+      this.histogram = histogram;
+    }
+  }
+
+  private static final class Handles {
+    private final Counter invocationCounter;
+    private final Counter totalTimeCounter;
+    // only used by entries that are not cached
+    @Nullable
+    private final WavefrontHistogram registryHistogram;
+
+    Handles(Counter invocationCounter, Counter totalTimeCounter,
+            @Nullable WavefrontHistogram registryHistogram) {
+      this.invocationCounter = invocationCounter;
+      this.totalTimeCounter = totalTimeCounter;
+      this.registryHistogram = registryHistogram;
+    }
+  }
+
+  /**
+   * The stripe index of a thread. Starts at a distinct value for each thread and is advanced
+   * when the thread finds its stripe locked, spreading contending threads over the stripes.
+   */
+  private static final class Probe {
+    private static final AtomicInteger seeds = new AtomicInteger();
+
+    private int value = seeds.addAndGet(0x9e3779b9);
+
+    void advance() {
+      // xorshift, as used for the probes of LongAdder, which maps 0 to itself
+      int v = value == 0 ? 1 : value;
+      v ^= v << 13;
+      v ^= v >>> 17;
+      v ^= v << 5;
+      value = v;
+    }
+  }
+
+  /**
+   * Padding ahead of the fields of a stripe. Fields of a superclass are laid out first, so that
+   * the padding keeps the fields of a stripe off the cache line of whatever precedes it.
+   */
+  @SuppressWarnings("unused")
+  private static class StripeLeftPadding {
+    private long p01, p02, p03, p04, p05, p06, p07;
+  }
+
+  private static class StripeFields extends StripeLeftPadding {
+    private static final AtomicIntegerFieldUpdater<StripeFields> LOCKED =
+        AtomicIntegerFieldUpdater.newUpdater(StripeFields.class, "locked");
+
+    private volatile int locked;
+    @GuardedBy("locked")
+    long invocations;
+    @GuardedBy("locked")
+    long errors;
+    @GuardedBy("locked")
+    long totalTimeMillis;
+    @GuardedBy("locked")
+    final long[] durations = new long[STRIPE_DURATIONS];
+    @GuardedBy("locked")
+    int durationCount;
+    // the minute the buffered durations were recorded in
+    @GuardedBy("locked")
+    long durationMinute;
+
+    boolean tryLock() {
+      return locked == 0 && LOCKED.compareAndSet(this, 0, 1);
+    }
+
+    void lock() {
+      while (!tryLock()) {
+        Thread.yield();
+      }
+    }
+
+    void unlock() {
+      locked = 0;
+    }
+  }
+
+  /**
+   * Updates accumulated by the threads that used one stripe since the last flush. Padded on both
+   * sides to a cache line of 64 bytes, so that threads updating adjacent stripes do not contend.
+   */
+  @SuppressWarnings("unused")
+  private static final class Stripe extends StripeFields {
+    private long p11, p12, p13, p14, p15, p16, p17;
+  }
+
+  static String sanitize(String s) {
+    final String whitespaceSanitized = WHITESPACE.matcher(s).replaceAll("-");
+    if (s.contains("\"") || s.contains("'")) {
+      // for single quotes, once we are double-quoted, single quotes can exist happily inside it.
+      return whitespaceSanitized.replaceAll("\"", "\\\\\"");
+    } else {
+      return whitespaceSanitized;
+    }
+  }
+
+  /**
+   * Cache key. Lookups reuse a per-thread mutable instance; stored keys are immutable copies.
+   */
+  private static final class Key {
+    private String application;
+    private String service;
+    @Nullable
+    private String cluster;
+    @Nullable
+    private String shard;
+    private String operationName;
+    private String component;
+    private int hash;
+
+    void set(String application, String service, @Nullable String cluster,
+             @Nullable String shard, String operationName, String component) {
+      this.application = application;
+      this.service = service;
+      this.cluster = cluster;
+      this.shard = shard;
+      this.operationName = operationName;
+      this.component = component;
+      int h = Objects.hashCode(application);
+      h = 31 * h + Objects.hashCode(service);
+      h = 31 * h + Objects.hashCode(cluster);
+      h = 31 * h + Objects.hashCode(shard);
+      h = 31 * h + Objects.hashCode(operationName);
+      this.hash = 31 * h + Objects.hashCode(component);
+    }
+
+    Key copy() {
+      Key key = new Key();
+      key.application = application;
+      key.service = service;
+      key.cluster = cluster;
+      key.shard = shard;
+      key.operationName = operationName;
+      key.component = component;
+      key.hash = hash;
+      return key;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hash == other.hash &&
+          Objects.equals(operationName, other.operationName) &&
+          Objects.equals(component, other.component) &&
+          Objects.equals(application, other.application) &&
+          Objects.equals(service, other.service) &&
+          Objects.equals(cluster, other.cluster) &&
+          Objects.equals(shard, other.shard);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A bounded-memory histogram of non-negative values, recorded into log-linear buckets.
+ *
+ * Values below 2^SUB_BUCKET_BITS are recorded exactly. Above that, each power of two is split
+ * into 2^SUB_BUCKET_BITS linear sub-buckets, so a bucket's midpoint is within about 1.6% of any
+ * value recorded into it. Values above {@link #MAX_VALUE} are recorded into the highest bucket.
+ *
+ * The buckets of each power of two are allocated when the first value in that range is recorded,
+ * so a histogram of values spanning a few orders of magnitude holds a few hundred bytes rather
+ * than the about 10KB of all buckets. Otherwise recording increments a single bucket without
+ * locking or allocating. The buckets are drained into centroids when the histogram is reported.
+ */
+@ThreadSafe
+final class LogLinearHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+
+  /**
+   * Largest value recorded without clamping, about 12.7 days in microseconds.
+   */
+  static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+  private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+  // the buckets of one power of two, or of the exact values below 2^SUB_BUCKET_BITS
+  private static final int CHUNKS = (BUCKETS + SUB_BUCKETS - 1) / SUB_BUCKETS;
+
+  private final AtomicReferenceArray<AtomicLongArray> chunks =
+      new AtomicReferenceArray<>(CHUNKS);
+
+  /**
+   * Records a value.
+   *
+   * @param value the value, negative values are recorded as 0
+   */
+  void record(long value) {
+    int index = bucketIndex(Math.max(0, Math.min(value, MAX_VALUE)));
+    chunk(index / SUB_BUCKETS).incrementAndGet(index % SUB_BUCKETS);
+  }
+
+  private AtomicLongArray chunk(int chunkIndex) {
+    AtomicLongArray chunk = chunks.get(chunkIndex);
+    if (chunk == null) {
+      chunks.compareAndSet(chunkIndex, null, new AtomicLongArray(SUB_BUCKETS));
+      chunk = chunks.get(chunkIndex);
+    }
+    return chunk;
+  }
+
+  /**
+   * Resets the histogram, returning the values recorded since the last drain.
+   *
+   * @return the midpoint and count of each non-empty bucket, in increasing order of value
+   */
+  List<Pair<Double, Integer>> drain() {
+    List<Pair<Double, Integer>> centroids = new ArrayList<>();
+    for (int i = 0; i < CHUNKS; i++) {
+      AtomicLongArray chunk = chunks.get(i);
+      if (chunk == null) {
+        continue;
+      }
+      for (int j = 0; j < SUB_BUCKETS; j++) {
+        if (chunk.get(j) != 0) {
+          long count = chunk.getAndSet(j, 0);
+          centroids.add(Pair.of(bucketMidpoint(i * SUB_BUCKETS + j),
+              (int) Math.min(count, Integer.MAX_VALUE)));
+        }
+      }
+    }
+    return centroids;
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    // the mantissa keeps the leading bit, so it lies in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+    int mantissa = (int) (value >>> shift);
+    return (shift + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+  }
+
+  static double bucketMidpoint(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + ((1L << shift) - 1) / 2.0;
+  }
+}
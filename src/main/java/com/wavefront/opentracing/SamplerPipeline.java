@@ -0,0 +1,166 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The samplers of a tracer, split once into the early samplers, consulted when a span starts, and
+ * the late samplers, consulted when it finishes. Sampling decisions are OR'd.
+ *
+ * Without samplers every span is sampled, and a phase with a single sampler calls it directly.
+ * The samplers are still called on every decision, since they may be reconfigured at runtime.
+ * The number of spans each sampler accepted and rejected is kept in striped counters.
+ */
+@ThreadSafe
+final class SamplerPipeline {
+
+  private final boolean sampleAll;
+  private final Stage[] earlyStages;
+  private final Stage[] lateStages;
+
+  /**
+   * @param samplers the samplers, in the order they are consulted
+   */
+  SamplerPipeline(List<Sampler> samplers) {
+    List<Stage> early = new ArrayList<>();
+    List<Stage> late = new ArrayList<>();
+    for (int i = 0; i < samplers.size(); i++) {
+      Sampler sampler = samplers.get(i);
+      (sampler.isEarly() ? early : late).add(new Stage(sampler, i));
+    }
+    this.sampleAll = samplers.isEmpty();
+    this.earlyStages = early.toArray(new Stage[0]);
+    this.lateStages = late.toArray(new Stage[0]);
+  }
+
+  /**
+   * Registers the accepted and rejected counts of each sampler as gauges.
+   *
+   * @param metricsReporter the reporter for the internal metrics
+   */
+  void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    register(metricsReporter, earlyStages);
+    register(metricsReporter, lateStages);
+  }
+
+  private static void register(WavefrontInternalReporter metricsReporter, Stage[] stages) {
+    for (Stage stage : stages) {
+      Map<String, String> tags = new HashMap<>();
+      tags.put("sampler", stage.sampler.getClass().getSimpleName());
+      tags.put("position", String.valueOf(stage.position));
+      metricsReporter.newGauge(new MetricName("sampler.accepted", tags),
+          () -> (() -> (double) stage.accepted.sum()));
+      metricsReporter.newGauge(new MetricName("sampler.rejected", tags),
+          () -> (() -> (double) stage.rejected.sum()));
+    }
+  }
+
+  /**
+   * Decides whether to sample a span.
+   *
+   * @param operationName the operation name of the span
+   * @param traceId the low 64 bits of the trace id
+   * @param duration the duration of the span in millis, 0 when the span starts
+   * @return true if any sampler of the phase samples the span
+   */
+  boolean sample(String operationName, long traceId, long duration) {
+    if (sampleAll) {
+      return true;
+    }
+    return sample(duration == 0 ? earlyStages : lateStages, operationName, traceId, duration);
+  }
+
+  /**
+   * Decides whether to sample a finished span that was not sampled when it started. Only the
+   * late samplers are consulted, since the early samplers already decided when the span started.
+   *
+   * @param operationName the operation name of the span
+   * @param traceId the low 64 bits of the trace id
+   * @param duration the duration of the span in millis
+   * @return true if any late sampler samples the span
+   */
+  boolean sampleFinished(String operationName, long traceId, long duration) {
+    if (sampleAll) {
+      return true;
+    }
+    return sample(lateStages, operationName, traceId, duration);
+  }
+
+  /**
+   * @return whether a span that was not sampled when it started may be sampled when it finishes
+   */
+  boolean samplesFinished() {
+    return sampleAll || lateStages.length > 0;
+  }
+
+  private static boolean sample(Stage[] stages, String operationName, long traceId,
+                                long duration) {
+    if (stages.length == 1) {
+      return stages[0].sample(operationName, traceId, duration);
+    }
+    for (Stage stage : stages) {
+      if (stage.sample(operationName, traceId, duration)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of spans accepted by the sampler at the given position
+   */
+  long getAccepted(int position) {
+    return stage(position).accepted.sum();
+  }
+
+  /**
+   * @return the number of spans rejected by the sampler at the given position
+   */
+  long getRejected(int position) {
+    return stage(position).rejected.sum();
+  }
+
+  private Stage stage(int position) {
+    for (Stage stage : earlyStages) {
+      if (stage.position == position) {
+        return stage;
+      }
+    }
+    for (Stage stage : lateStages) {
+      if (stage.position == position) {
+        return stage;
+      }
+    }
+    throw new IllegalArgumentException("invalid sampler position");
+  }
+
+  private static final class Stage {
+    private final Sampler sampler;
+    private final int position;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    Stage(Sampler sampler, int position) {
+      this.sampler = sampler;
+      this.position = position;
+    }
+
+    boolean sample(String operationName, long traceId, long duration) {
+      if (sampler.sample(operationName, traceId, duration)) {
+        accepted.increment();
+        return true;
+      }
+      rejected.increment();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Counter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.reporting.BoundedQueue;
+import com.wavefront.opentracing.reporting.RingBufferQueue;
+import com.wavefront.opentracing.reporting.WaitStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Processes finished spans on background worker threads, so that late sampling, reporting and
+ * derived metrics are not charged to the thread that finishes a span.
+ *
+ * Finished spans are handed over through a {@link RingBufferQueue}, so finishing threads claim a
+ * slot with a CAS rather than contending on a lock, and only signal the workers while one of them
+ * is blocked waiting. When the queue is full, the finishing thread processes its span itself, so
+ * that no span or derived metric is lost.
+ */
+@ThreadSafe
+final class SpanFinisher implements Runnable {
+  private static final Logger logger = Logger.getLogger(SpanFinisher.class.getName());
+
+  // how long an idle worker waits for spans before re-checking whether to stop
+  private static final long POLL_TIMEOUT_MILLIS = 200;
+
+  private final BoundedQueue<WavefrontSpan> queue;
+  private final List<Thread> workers;
+  @Nullable
+  private final Counter spansProcessedInline;
+  private volatile boolean stop = false;
+
+  SpanFinisher(int workerThreads, int maxQueueSize,
+               @Nullable WavefrontInternalReporter metricsReporter) {
+    this.queue = new RingBufferQueue<>(maxQueueSize, WaitStrategy.BLOCKING);
+    if (metricsReporter != null) {
+      metricsReporter.newGauge(new MetricName("finisher.queue.size", Collections.emptyMap()),
+          () -> (() -> (double) queue.size()));
+      spansProcessedInline = metricsReporter.newCounter(new MetricName("finisher.spans.inline",
+          Collections.emptyMap()));
+    } else {
+      spansProcessedInline = null;
+    }
+
+    workers = new ArrayList<>(workerThreads);
+    for (int i = 0; i < workerThreads; i++) {
+      Thread worker = new Thread(this, workerThreads == 1 ?
+          "wavefrontSpanFinisher" : "wavefrontSpanFinisher-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+    }
+    for (Thread worker : workers) {
+      worker.start();
+    }
+  }
+
+  /**
+   * Hands a finished span over to the workers, or processes it on the calling thread if the queue
+   * is full or the finisher is closed.
+   *
+   * @param span the finished span
+   */
+  void submit(WavefrontSpan span) {
+    if (stop || !queue.offer(span)) {
+      if (spansProcessedInline != null) {
+        spansProcessedInline.inc();
+      }
+      span.processFinished();
+    } else if (stop) {
+      // closed while queueing the span, after close() may have drained the queue
+      processRemaining();
+    }
+  }
+
+  @Override
+  public void run() {
+    while (!stop || !queue.isEmpty()) {
+      try {
+        WavefrontSpan span = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (span != null) {
+          span.processFinished();
+        }
+      } catch (InterruptedException ex) {
+        if (logger.isLoggable(Level.INFO)) {
+          logger.info("span finisher thread interrupted");
+        }
+      } catch (Throwable ex) {
+        logger.log(Level.WARNING, "Error processing finished span", ex);
+      }
+    }
+  }
+
+  /**
+   * Stops the workers once the spans in the queue have been processed. Spans still queued after
+   * the workers have stopped, or after waiting for them for 5 seconds, are processed on the
+   * calling thread.
+   */
+  void close() {
+    stop = true;
+    try {
+      // wait for 5 secs max
+      long deadline = System.currentTimeMillis() + 5000;
+      for (Thread worker : workers) {
+        worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    // spans queued by threads that saw the finisher open after the workers' last check
+    processRemaining();
+  }
+
+  private void processRemaining() {
+    List<WavefrontSpan> spans = new ArrayList<>();
+    while (queue.drainTo(spans, Integer.MAX_VALUE) > 0) {
+      for (WavefrontSpan span : spans) {
+        try {
+          span.processFinished();
+        } catch (Throwable ex) {
+          logger.log(Level.WARNING, "Error processing finished span", ex);
+        }
+      }
+      spans.clear();
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.Pair;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Bounded storage for the log events of a span, held in parallel arrays. Events beyond the
+ * maximum number of events, and fields beyond the maximum number of fields of an event, are
+ * dropped.
+ *
+ * Field keys are interned in a bounded pool shared by all spans, so that spans held in buffers
+ * do not each hold copies of the same keys. Values of immutable types and throwables are stored
+ * as given and only converted to strings when the events are read. Following the OpenTracing
+ * conventions, an event holding a throwable also gets its class as the {@code error.kind} field
+ * and its stack trace as the {@code stack} field, unless the event sets these fields itself.
+ */
+@NotThreadSafe
+final class SpanLogBuffer {
+
+  /** The maximum number of fields of an event. */
+  static final int MAX_FIELDS_PER_EVENT = 32;
+
+  /** The key of the field holding the event of {@link io.opentracing.Span#log(String)}. */
+  static final String EVENT_KEY = "event";
+
+  /** The key of the field holding the class of a logged throwable. */
+  static final String ERROR_KIND_KEY = "error.kind";
+
+  /** The key of the field holding the stack trace of a logged throwable. */
+  static final String STACK_KEY = "stack";
+
+  private static final int MAX_INTERNED_KEYS = 1024;
+  private static final Map<String, String> INTERNED_KEYS = new ConcurrentHashMap<>();
+
+  private final int maxEvents;
+  private long[] timestamps;
+  // index into keys and values after the last field of each event
+  private int[] fieldEnds;
+  private String[] keys;
+  private Object[] values;
+  private int events;
+  private int fields;
+
+  /**
+   * @param maxEvents the maximum number of events
+   */
+  SpanLogBuffer(int maxEvents) {
+    this.maxEvents = maxEvents;
+    int capacity = Math.min(4, maxEvents);
+    timestamps = new long[capacity];
+    fieldEnds = new int[capacity];
+    keys = new String[capacity];
+    values = new Object[capacity];
+  }
+
+  /**
+   * Adds an event with a single field.
+   *
+   * @return false if the event was dropped since the buffer is full
+   */
+  boolean add(long timestampMicros, String key, Object value) {
+    if (!startEvent(timestampMicros)) {
+      return false;
+    }
+    addField(key, value);
+    fieldEnds[events++] = fields;
+    return true;
+  }
+
+  /**
+   * Adds an event with the given fields. Entries with a null key or value are skipped.
+   *
+   * @return false if the event was dropped since the buffer is full
+   */
+  boolean add(long timestampMicros, Map<String, ?> eventFields) {
+    if (!startEvent(timestampMicros)) {
+      return false;
+    }
+    int count = 0;
+    for (Map.Entry<String, ?> field : eventFields.entrySet()) {
+      if (field.getKey() != null && field.getValue() != null) {
+        addField(field.getKey(), field.getValue());
+        if (++count == MAX_FIELDS_PER_EVENT) {
+          break;
+        }
+      }
+    }
+    fieldEnds[events++] = fields;
+    return true;
+  }
+
+  private boolean startEvent(long timestampMicros) {
+    if (events == maxEvents) {
+      return false;
+    }
+    if (events == timestamps.length) {
+      int capacity = Math.min(maxEvents, events * 2);
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      fieldEnds = Arrays.copyOf(fieldEnds, capacity);
+    }
+    timestamps[events] = timestampMicros;
+    return true;
+  }
+
+  private void addField(String key, Object value) {
+    if (fields == keys.length) {
+      int capacity = Math.max(4, fields * 2);
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    keys[fields] = intern(key);
+    values[fields] = value instanceof Throwable ? value : TagStore.storedValue(value);
+    fields++;
+  }
+
+  private static String intern(String key) {
+    String interned = INTERNED_KEYS.get(key);
+    if (interned != null) {
+      return interned;
+    }
+    if (INTERNED_KEYS.size() >= MAX_INTERNED_KEYS) {
+      return key;
+    }
+    interned = INTERNED_KEYS.putIfAbsent(key, key);
+    return interned == null ? key : interned;
+  }
+
+  /**
+   * @return the number of events
+   */
+  int size() {
+    return events;
+  }
+
+  /**
+   * @return the number of fields of all events
+   */
+  int fieldCount() {
+    return fields;
+  }
+
+  /**
+   * Gets the events as pairs of their timestamp in microseconds and their fields, in the order
+   * the events were added.
+   */
+  List<Pair<Long, Map<String, String>>> asList() {
+    if (events == 0) {
+      return Collections.emptyList();
+    }
+    List<Pair<Long, Map<String, String>>> list = new ArrayList<>(events);
+    int field = 0;
+    for (int i = 0; i < events; i++) {
+      Map<String, String> eventFields = new LinkedHashMap<>();
+      Throwable throwable = null;
+      for (; field < fieldEnds[i]; field++) {
+        eventFields.put(keys[field], TagStore.stringValue(values[field]));
+        if (throwable == null && values[field] instanceof Throwable) {
+          throwable = (Throwable) values[field];
+        }
+      }
+      if (throwable != null) {
+        eventFields.putIfAbsent(ERROR_KIND_KEY, throwable.getClass().getName());
+        eventFields.putIfAbsent(STACK_KEY, stackTrace(throwable));
+      }
+      list.add(Pair.of(timestamps[i], eventFields));
+    }
+    return list;
+  }
+
+  private static String stackTrace(Throwable throwable) {
+    StringWriter writer = new StringWriter();
+    throwable.printStackTrace(new PrintWriter(writer));
+    return writer.toString();
+  }
+}
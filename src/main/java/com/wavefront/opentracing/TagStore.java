@@ -0,0 +1,378 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.Constants;
+import com.wavefront.sdk.common.Pair;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Compact storage for the tags of a span, held in parallel key and value arrays.
+ *
+ * A store can reference a shared, immutable block of tags (the tracer's global tags) and only
+ * hold the tags added to it directly. Setting a single-valued tag that is present in the shared
+ * block hides the shared value instead of copying the block.
+ *
+ * Values of immutable types (strings, booleans and boxed primitives) are stored as given and
+ * only converted to strings when the tags are serialized. Values of other types are converted to
+ * strings when they are added, since they might change afterwards.
+ *
+ * The single-valued tags (application, service, cluster and shard) are indexed, so replacing or
+ * looking up their values does not scan the tags.
+ */
+@NotThreadSafe
+final class TagStore {
+
+  private static final String[] NO_KEYS = new String[0];
+  private static final Object[] NO_VALUES = new Object[0];
+
+  // indexes into singleValuedSlots
+  private static final int APPLICATION = 0;
+  private static final int SERVICE = 1;
+  private static final int CLUSTER = 2;
+  private static final int SHARD = 3;
+
+  @Nullable
+  private final TagStore shared;
+  private String[] keys;
+  private Object[] values;
+  private int size;
+  // position of each single-valued tag, -1 if absent
+  private final int[] singleValuedSlots = {-1, -1, -1, -1};
+  // bit per single-valued slot whose value in the shared block is replaced by a value of this store
+  private int hiddenSharedSlots;
+  // whether a list view references the arrays, which must then be copied before they change
+  private boolean arraysShared;
+
+  TagStore(int initialCapacity) {
+    this(null, initialCapacity);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param shared the shared block of tags included with the tags of this store, must not be
+   *               modified after this store is created
+   * @param initialCapacity the initial capacity for tags added to this store
+   */
+  TagStore(@Nullable TagStore shared, int initialCapacity) {
+    this.shared = shared;
+    if (initialCapacity > 0) {
+      keys = new String[initialCapacity];
+      values = new Object[initialCapacity];
+    } else {
+      keys = NO_KEYS;
+      values = NO_VALUES;
+    }
+  }
+
+  /**
+   * Creates the immutable block of the given tags, to be shared by many stores.
+   */
+  static TagStore sharedBlock(List<Pair<String, String>> tags) {
+    TagStore block = new TagStore(tags.size());
+    for (Pair<String, String> tag : tags) {
+      block.add(tag._1, tag._2);
+    }
+    return block;
+  }
+
+  /**
+   * Creates a copy of this store that references the same shared block.
+   */
+  TagStore copy() {
+    TagStore copy = new TagStore(shared, size);
+    System.arraycopy(keys, 0, copy.keys, 0, size);
+    System.arraycopy(values, 0, copy.values, 0, size);
+    System.arraycopy(singleValuedSlots, 0, copy.singleValuedSlots, 0, singleValuedSlots.length);
+    copy.size = size;
+    copy.hiddenSharedSlots = hiddenSharedSlots;
+    return copy;
+  }
+
+  /**
+   * Adds a tag. The value of a single-valued tag replaces the previous value, if any.
+   */
+  void add(String key, Object value) {
+    int slot = singleValuedSlot(key);
+    if (slot >= 0) {
+      if (singleValuedSlots[slot] >= 0) {
+        unshareArrays(keys.length);
+        values[singleValuedSlots[slot]] = storedValue(value);
+        return;
+      }
+      if (shared != null && shared.singleValuedSlots[slot] >= 0) {
+        hiddenSharedSlots |= 1 << slot;
+      }
+    }
+    if (size == keys.length) {
+      int capacity = Math.max(4, size + (size >> 1));
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+      arraysShared = false;
+    } else {
+      unshareArrays(keys.length);
+    }
+    keys[size] = key;
+    values[size] = storedValue(value);
+    if (slot >= 0) {
+      singleValuedSlots[slot] = size;
+    }
+    size++;
+  }
+
+  /**
+   * Copies the arrays if a list view references them, so that the view is not changed.
+   */
+  private void unshareArrays(int capacity) {
+    if (arraysShared) {
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+      arraysShared = false;
+    }
+  }
+
+  /**
+   * @return the number of tags, including visible tags of the shared block
+   */
+  int size() {
+    return sharedSize() + size;
+  }
+
+  /**
+   * @return the number of tags held by this store, excluding the shared block
+   */
+  int ownSize() {
+    return size;
+  }
+
+  /**
+   * @return the key of the tag held by this store at the given index
+   */
+  String ownKey(int index) {
+    return keys[index];
+  }
+
+  /**
+   * @return the value of the tag held by this store at the given index
+   */
+  Object ownValue(int index) {
+    return values[index];
+  }
+
+  private int sharedSize() {
+    return shared == null ? 0 : shared.size - Integer.bitCount(hiddenSharedSlots);
+  }
+
+  /**
+   * Returns the value of the given single-valued tag, or null if the tag is absent.
+   */
+  @Nullable
+  String getSingleValuedTagValue(String key) {
+    int slot = singleValuedSlot(key);
+    if (slot < 0) {
+      return null;
+    }
+    if (singleValuedSlots[slot] >= 0) {
+      return stringValue(values[singleValuedSlots[slot]]);
+    }
+    if (shared != null && shared.singleValuedSlots[slot] >= 0) {
+      return stringValue(shared.values[shared.singleValuedSlots[slot]]);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of the last tag with the given key in this block, or null if there is no
+   * such tag. Meant for inspecting shared blocks when they are created.
+   */
+  @Nullable
+  String getLastValue(String key) {
+    for (int i = size - 1; i >= 0; i--) {
+      if (keys[i].equals(key)) {
+        return stringValue(values[i]);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets a read-only list view of the tags as of now, the visible tags of the shared block
+   * first. Key/value pairs are created when elements are read. The view shares the arrays of
+   * this store until the next change, which copies them.
+   */
+  List<Pair<String, String>> asList() {
+    if (size() == 0) {
+      return Collections.emptyList();
+    }
+    arraysShared = true;
+    return new TagListView(this);
+  }
+
+  /**
+   * Gets a map of tag keys to all values of the key.
+   */
+  Map<String, Collection<String>> asMap() {
+    Map<String, Collection<String>> map = new HashMap<>();
+    if (shared != null) {
+      for (int i = 0; i < shared.size; i++) {
+        if (!isHidden(shared, hiddenSharedSlots, i)) {
+          addTo(map, shared.keys[i], shared.values[i]);
+        }
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      addTo(map, keys[i], values[i]);
+    }
+    return map;
+  }
+
+  private static void addTo(Map<String, Collection<String>> map, String key, Object value) {
+    map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(stringValue(value));
+  }
+
+  /**
+   * @return whether the tag at the given index of the shared block is hidden by the given mask
+   */
+  private static boolean isHidden(TagStore shared, int hiddenSharedSlots, int sharedIndex) {
+    if (hiddenSharedSlots == 0) {
+      return false;
+    }
+    for (int slot = 0; slot < shared.singleValuedSlots.length; slot++) {
+      if ((hiddenSharedSlots & (1 << slot)) != 0 &&
+          shared.singleValuedSlots[slot] == sharedIndex) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return asList().toString();
+  }
+
+  private static int singleValuedSlot(String key) {
+    switch (key) {
+      case Constants.APPLICATION_TAG_KEY:
+        return APPLICATION;
+      case Constants.SERVICE_TAG_KEY:
+        return SERVICE;
+      case Constants.CLUSTER_TAG_KEY:
+        return CLUSTER;
+      case Constants.SHARD_TAG_KEY:
+        return SHARD;
+      default:
+        return -1;
+    }
+  }
+
+  static Object storedValue(Object value) {
+    if (value instanceof String || value instanceof Boolean || value instanceof Integer ||
+        value instanceof Long || value instanceof Double || value instanceof Float ||
+        value instanceof Short || value instanceof Byte || value instanceof Character) {
+      return value;
+    }
+    return value.toString();
+  }
+
+  static String stringValue(Object value) {
+    return value instanceof String ? (String) value : value.toString();
+  }
+
+  /**
+   * Read-only view over the visible shared tags followed by the tags of a store, as of the time
+   * the view is created.
+   */
+  private static final class TagListView extends AbstractList<Pair<String, String>> {
+    @Nullable
+    private final TagStore shared;
+    private final int hiddenSharedSlots;
+    private final String[] keys;
+    private final Object[] values;
+    private final int size;
+    private final int sharedSize;
+
+    TagListView(TagStore store) {
+      this.shared = store.shared;
+      this.hiddenSharedSlots = store.hiddenSharedSlots;
+      this.keys = store.keys;
+      this.values = store.values;
+      this.size = store.size;
+      this.sharedSize = store.sharedSize();
+    }
+
+    @Override
+    public Pair<String, String> get(int index) {
+      if (index < 0 || index >= sharedSize + size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (sharedSize + size));
+      }
+      if (index >= sharedSize) {
+        int i = index - sharedSize;
+        return Pair.of(keys[i], stringValue(values[i]));
+      }
+      // skip the hidden single-valued tags of the shared block
+      int visible = -1;
+      for (int i = 0; i < shared.size; i++) {
+        if (!isHidden(shared, hiddenSharedSlots, i)) {
+          if (++visible == index) {
+            return Pair.of(shared.keys[i], stringValue(shared.values[i]));
+          }
+        }
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public int size() {
+      return sharedSize + size;
+    }
+
+    @Override
+    public Iterator<Pair<String, String>> iterator() {
+      return new Iterator<Pair<String, String>>() {
+        // position in the shared block while in it, then in the store
+        private int sharedIndex = 0;
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+          if (shared != null) {
+            while (sharedIndex < shared.size &&
+                isHidden(shared, hiddenSharedSlots, sharedIndex)) {
+              sharedIndex++;
+            }
+            if (sharedIndex < shared.size) {
+              return true;
+            }
+          }
+          return index < size;
+        }
+
+        @Override
+        public Pair<String, String> next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          if (shared != null && sharedIndex < shared.size) {
+            int i = sharedIndex++;
+            return Pair.of(shared.keys[i], stringValue(shared.values[i]));
+          }
+          int i = index++;
+          return Pair.of(keys[i], stringValue(values[i]));
+        }
+      };
+    }
+  }
+}
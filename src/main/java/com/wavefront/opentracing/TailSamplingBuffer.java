@@ -0,0 +1,339 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Counter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.sampling.TracePolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Buffers the finished spans of each trace so that sampling can be decided for the trace as a
+ * whole. The decision is made when the local root span of the trace finishes, when the trace times
+ * out, or when the trace is evicted because the buffer exceeds its memory ceiling, oldest trace
+ * first. A trace is kept if any of its spans was sampled by the tracer's samplers or if any
+ * {@link TracePolicy} keeps it, in which case all its spans are reported; otherwise they are all
+ * discarded.
+ *
+ * Decisions are remembered for a bounded number of recent traces, so that spans finishing after
+ * their trace was decided follow the same decision. A decided trace releases its spans right
+ * away, and is dropped from the arrival order the next time pending traces are expired.
+ */
+@ThreadSafe
+final class TailSamplingBuffer {
+  private static final Logger logger = Logger.getLogger(TailSamplingBuffer.class.getName());
+
+  private static final int MAX_REMEMBERED_DECISIONS = 10000;
+
+  private final List<TracePolicy> policies;
+  private final long timeoutNanos;
+  private final long maxBufferedBytes;
+  private final Consumer<WavefrontSpan> reporter;
+  private final ScheduledExecutorService expiryService;
+
+  private final ConcurrentHashMap<UUID, PendingTrace> pending = new ConcurrentHashMap<>();
+  /** Pending traces in order of arrival, including traces that were decided since. */
+  private final ConcurrentLinkedQueue<PendingTrace> arrivals = new ConcurrentLinkedQueue<>();
+  private final AtomicLong bufferedBytes = new AtomicLong();
+  /** Recent decisions, with their trace ids in the order they were decided to bound them. */
+  private final ConcurrentHashMap<UUID, Boolean> decisions = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<UUID> decisionOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger decisionCount = new AtomicInteger();
+
+  @Nullable
+  private final Counter tracesKept;
+  @Nullable
+  private final Counter tracesDiscarded;
+  @Nullable
+  private final Counter tracesTimedOut;
+  @Nullable
+  private final Counter tracesEvicted;
+  @Nullable
+  private final Counter lateSpans;
+  @Nullable
+  private final Counter spansDiscarded;
+
+  /**
+   * @param policies the policies that may keep a trace
+   * @param timeoutMillis how long to wait for the local root span of a trace to finish
+   * @param maxBufferedBytes the estimated memory ceiling of buffered spans
+   * @param reporter receives the spans of kept traces
+   * @param metricsReporter the reporter for the internal metrics, can be null
+   */
+  TailSamplingBuffer(List<TracePolicy> policies, long timeoutMillis, long maxBufferedBytes,
+                     Consumer<WavefrontSpan> reporter,
+                     @Nullable WavefrontInternalReporter metricsReporter) {
+    this.policies = new ArrayList<>(policies);
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.reporter = reporter;
+
+    if (metricsReporter != null) {
+      metricsReporter.newGauge(new MetricName("tail.buffer.bytes", Collections.emptyMap()),
+          () -> (() -> (double) bufferedBytes.get()));
+      metricsReporter.newGauge(new MetricName("tail.buffer.traces", Collections.emptyMap()),
+          () -> (() -> (double) pending.size()));
+      tracesKept = metricsReporter.newCounter(new MetricName("tail.traces.kept",
+          Collections.emptyMap()));
+      tracesDiscarded = metricsReporter.newCounter(new MetricName("tail.traces.discarded",
+          Collections.emptyMap()));
+      tracesTimedOut = metricsReporter.newCounter(new MetricName("tail.traces.timed_out",
+          Collections.emptyMap()));
+      tracesEvicted = metricsReporter.newCounter(new MetricName("tail.traces.evicted",
+          Collections.emptyMap()));
+      lateSpans = metricsReporter.newCounter(new MetricName("tail.spans.late",
+          Collections.emptyMap()));
+      spansDiscarded = metricsReporter.newCounter(new MetricName("spans.discarded",
+          Collections.emptyMap()));
+    } else {
+      tracesKept = null;
+      tracesDiscarded = null;
+      tracesTimedOut = null;
+      tracesEvicted = null;
+      lateSpans = null;
+      spansDiscarded = null;
+    }
+
+    expiryService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "wavefrontTailSampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long periodMillis = Math.max(10, Math.min(1000, timeoutMillis / 4));
+    expiryService.scheduleAtFixedRate(this::expire, periodMillis, periodMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Adds a finished span to the buffer of its trace.
+   *
+   * @param span the finished span
+   * @param sampled whether the tracer's samplers sampled the span
+   */
+  void add(WavefrontSpan span, boolean sampled) {
+    UUID traceId = span.context().getTraceId();
+    PendingTrace trace = pending.get(traceId);
+    if (trace == null) {
+      Boolean decision = decisions.get(traceId);
+      if (decision != null) {
+        if (lateSpans != null) {
+          lateSpans.inc();
+        }
+        emit(span, decision);
+        return;
+      }
+      trace = pending.computeIfAbsent(traceId, this::newTrace);
+    }
+
+    int bytes = span.estimatedSizeBytes();
+    if (!trace.add(span, sampled, bytes)) {
+      // decided concurrently
+      emit(span, trace.kept);
+      return;
+    }
+    bufferedBytes.addAndGet(bytes);
+    if (span.isLocalRoot()) {
+      decide(trace, span);
+    }
+    while (bufferedBytes.get() > maxBufferedBytes && evictOldest()) {
+      // keep evicting
+    }
+  }
+
+  private PendingTrace newTrace(UUID traceId) {
+    PendingTrace trace = new PendingTrace(traceId, System.nanoTime());
+    arrivals.add(trace);
+    return trace;
+  }
+
+  /**
+   * Decides the oldest pending trace.
+   *
+   * @return false if there are no pending traces
+   */
+  private boolean evictOldest() {
+    PendingTrace trace;
+    while ((trace = arrivals.poll()) != null) {
+      if (decide(trace, null)) {
+        if (tracesEvicted != null) {
+          tracesEvicted.inc();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Decides pending traces whose local root did not finish within the timeout, and drops traces
+   * that were decided since they arrived.
+   */
+  void expire() {
+    try {
+      long now = System.nanoTime();
+      // traces arrive in order, so the traces after the first one within the timeout are too
+      boolean expiring = true;
+      Iterator<PendingTrace> iterator = arrivals.iterator();
+      while (iterator.hasNext()) {
+        PendingTrace trace = iterator.next();
+        if (trace.isDecided()) {
+          iterator.remove();
+        } else if (expiring && now - trace.arrivalNanos >= timeoutNanos) {
+          iterator.remove();
+          if (decide(trace, null) && tracesTimedOut != null) {
+            tracesTimedOut.inc();
+          }
+        } else {
+          expiring = false;
+        }
+      }
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Error expiring pending traces", t);
+    }
+  }
+
+  /**
+   * Applies the policies to a trace and reports or discards its spans.
+   *
+   * @return false if the trace had already been decided
+   */
+  private boolean decide(PendingTrace trace, @Nullable WavefrontSpan localRoot) {
+    List<WavefrontSpan> spans;
+    boolean keep;
+    long bytes;
+    synchronized (trace) {
+      if (trace.decided) {
+        return false;
+      }
+      keep = trace.sampled || matches(trace.spans, localRoot);
+      trace.decided = true;
+      trace.kept = keep;
+      spans = trace.spans;
+      bytes = trace.bytes;
+      // the trace may stay in the arrival order for a while, it need not hold on to its spans
+      trace.spans = null;
+    }
+    // remember the decision before the trace stops being pending
+    remember(trace.traceId, keep);
+    pending.remove(trace.traceId, trace);
+    bufferedBytes.addAndGet(-bytes);
+
+    for (int i = 0; i < spans.size(); i++) {
+      emit(spans.get(i), keep);
+    }
+    Counter counter = keep ? tracesKept : tracesDiscarded;
+    if (counter != null) {
+      counter.inc();
+    }
+    return true;
+  }
+
+  private void remember(UUID traceId, boolean keep) {
+    if (decisions.put(traceId, keep) != null) {
+      // a span that raced with the decision started another pending trace for the same id
+      return;
+    }
+    decisionOrder.add(traceId);
+    if (decisionCount.incrementAndGet() > MAX_REMEMBERED_DECISIONS) {
+      UUID eldest = decisionOrder.poll();
+      if (eldest != null) {
+        decisions.remove(eldest);
+        decisionCount.decrementAndGet();
+      }
+    }
+  }
+
+  private boolean matches(List<WavefrontSpan> spans, @Nullable WavefrontSpan localRoot) {
+    for (TracePolicy policy : policies) {
+      try {
+        if (policy.keep(spans, localRoot)) {
+          return true;
+        }
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Error applying trace policy", t);
+      }
+    }
+    return false;
+  }
+
+  private void emit(WavefrontSpan span, boolean keep) {
+    if (keep) {
+      reporter.accept(span);
+    } else if (spansDiscarded != null) {
+      spansDiscarded.inc();
+    }
+  }
+
+  /**
+   * @return the number of traces in the arrival order, including traces decided since
+   */
+  int getArrivalCount() {
+    return arrivals.size();
+  }
+
+  /**
+   * Stops expiring traces and decides all pending traces.
+   */
+  void close() {
+    expiryService.shutdownNow();
+    PendingTrace trace;
+    while ((trace = arrivals.poll()) != null) {
+      decide(trace, null);
+    }
+  }
+
+  private static final class PendingTrace {
+    private final UUID traceId;
+    private final long arrivalNanos;
+    /** The buffered spans, null once the trace has been decided. */
+    @GuardedBy("this")
+    private List<WavefrontSpan> spans = new ArrayList<>(4);
+    @GuardedBy("this")
+    private boolean sampled = false;
+    @GuardedBy("this")
+    private long bytes = 0;
+    @GuardedBy("this")
+    private boolean decided = false;
+    private volatile boolean kept = false;
+
+    PendingTrace(UUID traceId, long arrivalNanos) {
+      this.traceId = traceId;
+      this.arrivalNanos = arrivalNanos;
+    }
+
+    /**
+     * @return false if the trace was decided and the span was not added
+     */
+    synchronized boolean add(WavefrontSpan span, boolean sampled, int bytes) {
+      if (decided) {
+        return false;
+      }
+      spans.add(span);
+      this.sampled |= sampled;
+      this.bytes += bytes;
+      return true;
+    }
+
+    synchronized boolean isDecided() {
+      return decided;
+    }
+  }
+}
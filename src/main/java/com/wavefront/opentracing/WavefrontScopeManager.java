@@ -0,0 +1,116 @@
+package com.wavefront.opentracing;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+
+/**
+ * A {@link ScopeManager} that keeps the active scopes of each thread in a stack of preallocated
+ * scope objects, which are reused by later activations at the same depth. Activating a span and
+ * closing its scope allocate nothing once the stack of a thread has reached its depth.
+ *
+ * Like {@link io.opentracing.util.ThreadLocalScopeManager}, closing a scope that is not the
+ * active scope of the current thread is ignored. Since scope objects are reused, a scope must not
+ * be used after it was closed.
+ */
+public class WavefrontScopeManager implements ScopeManager {
+  private static final Logger logger = Logger.getLogger(WavefrontScopeManager.class.getName());
+
+  private static final int INITIAL_DEPTH = 8;
+
+  private final ThreadLocal<ScopeStack> stacks = ThreadLocal.withInitial(ScopeStack::new);
+
+  @Override
+  public Scope activate(Span span) {
+    return stacks.get().push(span, false);
+  }
+
+  @Override
+  public Scope activate(Span span, boolean finishSpanOnClose) {
+    return stacks.get().push(span, finishSpanOnClose);
+  }
+
+  @Override
+  public Scope active() {
+    return stacks.get().top();
+  }
+
+  @Override
+  public Span activeSpan() {
+    StackScope scope = stacks.get().top();
+    return scope == null ? null : scope.span;
+  }
+
+  /**
+   * The active scopes of one thread, innermost last.
+   */
+  private static final class ScopeStack {
+    private final Thread owner = Thread.currentThread();
+    private StackScope[] scopes = new StackScope[INITIAL_DEPTH];
+    private int depth = 0;
+
+    StackScope push(Span span, boolean finishSpanOnClose) {
+      if (depth == scopes.length) {
+        scopes = Arrays.copyOf(scopes, depth * 2);
+      }
+      StackScope scope = scopes[depth];
+      if (scope == null) {
+        scope = new StackScope(this, depth);
+        scopes[depth] = scope;
+      }
+      scope.span = span;
+      scope.finishSpanOnClose = finishSpanOnClose;
+      depth++;
+      return scope;
+    }
+
+    @Nullable
+    StackScope top() {
+      return depth == 0 ? null : scopes[depth - 1];
+    }
+  }
+
+  private static final class StackScope implements Scope {
+    private final ScopeStack stack;
+    private final int index;
+    // only accessed by the thread owning the stack
+    private Span span;
+    private boolean finishSpanOnClose;
+
+    StackScope(ScopeStack stack, int index) {
+      this.stack = stack;
+      this.index = index;
+    }
+
+    @Override
+    public void close() {
+      if (stack.owner != Thread.currentThread() || stack.depth != index + 1) {
+        // not the active scope of this thread, or already closed
+        if (logger.isLoggable(Level.FINE)) {
+          logger.fine("Ignoring close of a scope that is not active: depth=" + (index + 1));
+        }
+        return;
+      }
+      try {
+        if (finishSpanOnClose) {
+          span.finish();
+        }
+      } finally {
+        // don't hold on to the span while the scope is unused
+        span = null;
+        stack.depth--;
+      }
+    }
+
+    @Override
+    public Span span() {
+      return span;
+    }
+  }
+}
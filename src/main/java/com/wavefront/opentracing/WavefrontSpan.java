@@ -1,31 +1,28 @@
 package com.wavefront.opentracing;
 
-import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Counter;
-import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
 import com.wavefront.sdk.common.Constants;
 import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.entities.tracing.SpanLog;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
+import io.opentracing.References;
 import io.opentracing.Span;
 import io.opentracing.tag.Tag;
 import io.opentracing.tag.Tags;
 
 import static com.wavefront.sdk.common.Constants.COMPONENT_TAG_KEY;
-import static com.wavefront.sdk.common.Constants.NULL_TAG_VAL;
 
 /**
  * Represents a thread-safe Wavefront trace span based on OpenTracing's {@link Span}.
@@ -38,57 +35,66 @@ public class WavefrontSpan implements Span {
   private final WavefrontTracer tracer;
   private final long startTimeMicros;
   private final long startTimeNanos;
+  private final TagStore tags;
+  @Nullable
+  private final WavefrontSpanContext parent;
+  // all parents when there are several, otherwise null
   @Nullable
-  private final List<Pair<String, String>> tags;
   private final List<Reference> parents;
-  private final List<Reference> follows;
   @Nullable
-  private final Counter spansDiscarded;
+  private final List<Reference> follows;
 
-  @Nullable
-  private Map<String, Pair<String, String>> singleValuedTags;
   private String operationName;
   private long durationMicroseconds;
   private WavefrontSpanContext spanContext;
+  @Nullable
+  private SpanLogBuffer logs = null;
   private Boolean forceSampling = null;
   private boolean finished = false;
   private boolean isError = false;
 
   // Store it as a member variable so that we can efficiently retrieve the component tag.
-  private String componentTagValue = NULL_TAG_VAL;
+  private String componentTagValue;
+
+  /** The start nanos of spans started with an explicit timestamp, whose duration isn't measured. */
+  static final long NO_START_NANOS = Long.MIN_VALUE;
+
+  // rough per-object footprints for estimating the memory held by buffered spans
+  private static final int ESTIMATED_SPAN_BYTES = 256;
+  private static final int ESTIMATED_TAG_BYTES = 64;
 
   private static Set<String> SINGLE_VALUED_TAG_KEYS = new HashSet<>(Arrays.asList(
       Constants.APPLICATION_TAG_KEY, Constants.SERVICE_TAG_KEY, Constants.CLUSTER_TAG_KEY,
       Constants.SHARD_TAG_KEY));
 
+  /**
+   * Constructor.
+   *
+   * @param parent the first parent, if any
+   * @param parents all parent references if there are several parents, otherwise null
+   * @param follows the follows from references, if any
+   * @param tags the tags set on the builder, adopted by the span; must include the tracer's
+   *             global tags as their shared block
+   */
   WavefrontSpan(WavefrontTracer tracer, String operationName, WavefrontSpanContext spanContext,
-                long startTimeMicros, long startTimeNanos, List<Reference> parents,
-                List<Reference> follows, List<Pair<String, String>> tags) {
+                long startTimeMicros, long startTimeNanos, @Nullable WavefrontSpanContext parent,
+                @Nullable List<Reference> parents, @Nullable List<Reference> follows,
+                @Nullable TagStore tags) {
     this.tracer = tracer;
     this.operationName = operationName;
     this.spanContext = spanContext;
     this.startTimeMicros = startTimeMicros;
     this.startTimeNanos = startTimeNanos;
+    this.parent = parent;
     this.parents = parents;
     this.follows = follows;
 
-    spansDiscarded = tracer.getWfInternalReporter() == null ? null :
-        tracer.getWfInternalReporter().newCounter(
-            new MetricName("spans.discarded", Collections.emptyMap()));
-
-    List<Pair<String, String>> globalTags = tracer.getTags();
-    this.tags = (globalTags == null || globalTags.isEmpty()) && (tags == null || tags.isEmpty()) ?
-      null : new ArrayList<>();
-    this.singleValuedTags = null;
-    if (globalTags != null) {
-      for (Pair<String, String> tag : globalTags) {
-        setTagObject(tag._1, tag._2);
-      }
-    }
-    if (tags != null) {
-      for (Pair<String, String> tag : tags) {
-        setTagObject(tag._1, tag._2);
-      }
+    // global tags are referenced, not copied; the span only stores its own tags
+    this.tags = tags == null ? new TagStore(tracer.getGlobalTags(), 0) : tags;
+    this.componentTagValue = tracer.getGlobalComponentTagValue();
+    this.isError = tracer.hasGlobalErrorTag();
+    for (int i = 0; i < this.tags.ownSize(); i++) {
+      onTagAdded(this.tags.ownKey(i), this.tags.ownValue(i));
     }
   }
 
@@ -119,45 +125,40 @@ public class WavefrontSpan implements Span {
 
   private synchronized WavefrontSpan setTagObject(String key, Object value) {
     if (key != null && !key.isEmpty() && value != null) {
-      Pair<String, String> tag = Pair.of(key, value.toString());
-
-      // if tag should be single-valued, replace the previous value if it exists
-      if (isSingleValuedTagKey(key)) {
-        if (singleValuedTags == null) {
-          singleValuedTags = new HashMap<>();
-        }
-        if (singleValuedTags.containsKey(key)) {
-          tags.remove(singleValuedTags.get(key));
-        }
-        singleValuedTags.put(key, tag);
-      }
-
-      tags.add(tag);
+      // if tag should be single-valued, the previous value is replaced if it exists
+      tags.add(key, value);
+      onTagAdded(key, value);
+    }
+    return this;
+  }
 
-      if (key.equals(COMPONENT_TAG_KEY)) {
-        componentTagValue = value.toString();
-      }
+  /**
+   * Applies the effects of a tag added to the span: the component, sampling priority and error
+   * tags change the state of the span.
+   */
+  private void onTagAdded(String key, Object value) {
+    if (key.equals(COMPONENT_TAG_KEY)) {
+      componentTagValue = value.toString();
+    }
 
-      // allow span to be reported if sampling.priority is > 0.
-      if (Tags.SAMPLING_PRIORITY.getKey().equals(key) && value instanceof Number) {
-        int priority = ((Number) value).intValue();
-        forceSampling = priority > 0 ? Boolean.TRUE : Boolean.FALSE;
-        spanContext = spanContext.withSamplingDecision(forceSampling);
-      }
+    // allow span to be reported if sampling.priority is > 0.
+    if (Tags.SAMPLING_PRIORITY.getKey().equals(key) && value instanceof Number) {
+      int priority = ((Number) value).intValue();
+      forceSampling = priority > 0 ? Boolean.TRUE : Boolean.FALSE;
+      spanContext = spanContext.withSamplingDecision(forceSampling);
+    }
 
-      if (Tags.ERROR.getKey().equals(key)) {
-        isError = true;
-      }
+    if (Tags.ERROR.getKey().equals(key)) {
+      isError = true;
+    }
 
-      // allow span to be reported if error tag is set.
-      if (forceSampling == null && Tags.ERROR.getKey().equals(key)) {
-        if (value instanceof Boolean && (Boolean) value) {
-          forceSampling = Boolean.TRUE;
-          spanContext = spanContext.withSamplingDecision(forceSampling);
-        }
+    // allow span to be reported if error tag is set.
+    if (forceSampling == null && Tags.ERROR.getKey().equals(key)) {
+      if (value instanceof Boolean && (Boolean) value) {
+        forceSampling = Boolean.TRUE;
+        spanContext = spanContext.withSamplingDecision(forceSampling);
       }
     }
-    return this;
   }
 
   public boolean isError() {
@@ -165,29 +166,65 @@ public class WavefrontSpan implements Span {
   }
 
   @Override
-  public WavefrontSpan log(Map<String, ?> map) {
-    // no-op
+  public synchronized WavefrontSpan log(Map<String, ?> fields) {
+    if (fields != null && recordsLogs() &&
+        !logBuffer().add(tracer.currentTimeMicros(), fields)) {
+      tracer.spanLogDropped();
+    }
     return this;
   }
 
   @Override
-  public WavefrontSpan log(long l, Map<String, ?> map) {
-    // no-op
+  public synchronized WavefrontSpan log(long timestampMicros, Map<String, ?> fields) {
+    if (fields != null && recordsLogs() && !logBuffer().add(timestampMicros, fields)) {
+      tracer.spanLogDropped();
+    }
     return this;
   }
 
   @Override
-  public WavefrontSpan log(String s) {
-    // no-op
+  public synchronized WavefrontSpan log(String event) {
+    if (event != null && recordsLogs() &&
+        !logBuffer().add(tracer.currentTimeMicros(), SpanLogBuffer.EVENT_KEY, event)) {
+      tracer.spanLogDropped();
+    }
     return this;
   }
 
   @Override
-  public WavefrontSpan log(long l, String s) {
-    // no-op
+  public synchronized WavefrontSpan log(long timestampMicros, String event) {
+    if (event != null && recordsLogs() &&
+        !logBuffer().add(timestampMicros, SpanLogBuffer.EVENT_KEY, event)) {
+      tracer.spanLogDropped();
+    }
     return this;
   }
 
+  /**
+   * @return whether log events are recorded: the span is not finished, and it is sampled or may
+   * still be sampled late. Spans with a sampling.priority of 0 and spans of shed traces are never
+   * sampled late.
+   */
+  private boolean recordsLogs() {
+    if (finished || tracer.getMaxSpanLogs() == 0) {
+      return false;
+    }
+    if (forceSampling != null) {
+      return forceSampling;
+    }
+    if (!spanContext.isSampled() || spanContext.getSamplingDecision()) {
+      return true;
+    }
+    return !spanContext.isShed() && tracer.mayReportUnsampledSpans();
+  }
+
+  private SpanLogBuffer logBuffer() {
+    if (logs == null) {
+      logs = new SpanLogBuffer(tracer.getMaxSpanLogs());
+    }
+    return logs;
+  }
+
   @Override
   public synchronized WavefrontSpan setBaggageItem(String key, String value) {
     spanContext = spanContext.withBaggageItem(key, value);
@@ -208,8 +245,8 @@ public class WavefrontSpan implements Span {
 
   @Override
   public void finish() {
-    if (startTimeNanos != 0) {
-      long duration = System.nanoTime() - startTimeNanos;
+    if (startTimeNanos != NO_START_NANOS) {
+      long duration = tracer.nanoTime() - startTimeNanos;
       doFinish(TimeUnit.NANOSECONDS.toMicros(duration));
     } else {
       // Ideally finish(finishTimeMicros) should be called if user provided startTimeMicros
@@ -231,18 +268,41 @@ public class WavefrontSpan implements Span {
       finished = true;
     }
 
-    // perform another sampling for duration based samplers
-    if (forceSampling == null && (!spanContext.isSampled() || !spanContext.getSamplingDecision())) {
-      boolean decision = tracer.sample(operationName,
-          spanContext.getTraceId().getLeastSignificantBits(), durationMicros/1000);
-      spanContext = decision ? spanContext.withSamplingDecision(decision) : spanContext;
+    SpanFinisher spanFinisher = tracer.getSpanFinisher();
+    if (spanFinisher != null) {
+      // only the duration is recorded on the calling thread
+      spanFinisher.submit(this);
+    } else {
+      processFinished();
+    }
+  }
+
+  /**
+   * Performs late sampling and reports the finished span and its derived metrics.
+   */
+  void processFinished() {
+    WavefrontSpanContext ctx;
+    synchronized (this) {
+      // perform another sampling for duration based samplers, unless the trace was shed
+      if (forceSampling == null && !spanContext.isShed() &&
+          (!spanContext.isSampled() || !spanContext.getSamplingDecision())) {
+        boolean decision = tracer.sampleFinished(operationName, spanContext.getTraceIdLow(),
+            durationMicroseconds / 1000);
+        spanContext = decision ? spanContext.withSamplingDecision(decision) : spanContext;
+      }
+      ctx = spanContext;
     }
 
-    // only report spans if the sampling decision allows it
-    if (spanContext.isSampled() && spanContext.getSamplingDecision()) {
+    boolean sampled = ctx.isSampled() && ctx.getSamplingDecision();
+    TailSamplingBuffer tailSamplingBuffer = tracer.getTailSamplingBuffer();
+    if (tailSamplingBuffer != null && !ctx.isShed()) {
+      // the span is reported or discarded along with the rest of its trace
+      tailSamplingBuffer.add(this, sampled);
+    } else if (sampled) {
+      // only report spans if the sampling decision allows it
       tracer.reportSpan(this);
-    } else if (spansDiscarded != null) {
-      spansDiscarded.inc();
+    } else if (tracer.getSpansDiscarded() != null) {
+      tracer.getSpansDiscarded().inc();
     }
     // irrespective of sampling, report wavefront-generated metrics/histograms to Wavefront
     tracer.reportWavefrontGeneratedData(this);
@@ -261,15 +321,13 @@ public class WavefrontSpan implements Span {
   }
 
   /**
-   * Gets the list of multi-valued tags.
+   * Gets the list of multi-valued tags. The list is a read-only view; tag values are converted to
+   * strings as its elements are read.
    *
    * @return The list of tags.
    */
   public synchronized List<Pair<String, String>> getTagsAsList() {
-    if (tags == null) {
-      return Collections.emptyList();
-    }
-    return Collections.unmodifiableList(tags);
+    return tags.asList();
   }
 
   /**
@@ -278,17 +336,35 @@ public class WavefrontSpan implements Span {
    * @return The map of tags
    */
   public synchronized Map<String, Collection<String>> getTagsAsMap() {
-    if (tags == null) {
-      return Collections.emptyMap();
+    return Collections.unmodifiableMap(tags.asMap());
+  }
+
+  /**
+   * Gets the log events of the span as pairs of their timestamp in microseconds and their fields.
+   * Field values are converted to strings when the list is created.
+   *
+   * @return The list of log events.
+   */
+  public synchronized List<Pair<Long, Map<String, String>>> getLogsAsList() {
+    return logs == null ? Collections.emptyList() : logs.asList();
+  }
+
+  /**
+   * Gets the log events of the span in the form sent to Wavefront.
+   *
+   * @return The list of span logs, or null if the span has no log events.
+   */
+  @Nullable
+  public List<SpanLog> getSpanLogs() {
+    List<Pair<Long, Map<String, String>>> events = getLogsAsList();
+    if (events.isEmpty()) {
+      return null;
+    }
+    List<SpanLog> spanLogs = new ArrayList<>(events.size());
+    for (Pair<Long, Map<String, String>> event : events) {
+      spanLogs.add(new SpanLog(event._1, event._2));
     }
-    return Collections.unmodifiableMap(
-        tags.stream().collect(
-            Collectors.groupingBy(
-                p -> p._1,
-                Collectors.mapping(p -> p._2, Collectors.toList())
-            )
-        )
-    );
+    return spanLogs;
   }
 
   /**
@@ -299,17 +375,23 @@ public class WavefrontSpan implements Span {
    */
   @Nullable
   public synchronized String getSingleValuedTagValue(String key) {
-    if (singleValuedTags == null || !singleValuedTags.containsKey(key)) {
-      return null;
-    }
-    return singleValuedTags.get(key)._2;
+    return tags.getSingleValuedTagValue(key);
   }
 
+  /**
+   * Gets the parent references. The list is created on each call unless the span has several
+   * parents.
+   *
+   * @return The list of parent references.
+   */
   public List<Reference> getParents() {
-    if (parents == null) {
+    if (parents != null) {
+      return Collections.unmodifiableList(parents);
+    }
+    if (parent == null) {
       return Collections.emptyList();
     }
-    return Collections.unmodifiableList(parents);
+    return Collections.singletonList(new Reference(parent, References.CHILD_OF));
   }
 
   public List<Reference> getFollows() {
@@ -319,6 +401,26 @@ public class WavefrontSpan implements Span {
     return Collections.unmodifiableList(follows);
   }
 
+  /**
+   * @return true if the span has no parent started by this process, i.e. it is the first span of
+   * its trace in this process
+   */
+  boolean isLocalRoot() {
+    if (parent != null) {
+      return !parent.isLocal();
+    }
+    return follows == null || follows.isEmpty() || !follows.get(0).getSpanContext().isLocal();
+  }
+
+  /**
+   * @return a rough estimate of the memory held by the span, in bytes
+   */
+  synchronized int estimatedSizeBytes() {
+    int fields = tags.ownSize() + (logs == null ? 0 : logs.fieldCount());
+    return ESTIMATED_SPAN_BYTES + ESTIMATED_TAG_BYTES * fields +
+        2 * operationName.length();
+  }
+
   public String getComponentTagValue() {
     return componentTagValue;
   }
@@ -331,7 +433,7 @@ public class WavefrontSpan implements Span {
         ", durationMicroseconds=" + durationMicroseconds +
         ", tags=" + tags +
         ", spanContext=" + spanContext +
-        ", parents=" + parents +
+        ", parents=" + getParents() +
         ", follows=" + follows +
         '}';
   }
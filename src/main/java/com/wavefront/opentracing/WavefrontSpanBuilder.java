@@ -1,12 +1,10 @@
 package com.wavefront.opentracing;
 
-import com.wavefront.sdk.common.Pair;
+import com.wavefront.opentracing.id.IdGenerator;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -23,18 +21,27 @@ import io.opentracing.tag.Tag;
  *
  * https://github.com/opentracing/specification/blob/master/specification.md
  *
+ * A single parent is held inline, and tags are added to a {@link TagStore} that the started span
+ * adopts, so building a span with one parent and a few tags allocates little besides the span.
+ *
  * @author Vikram Raman (vikram@wavefront.com)
  */
 @NotThreadSafe
 public class WavefrontSpanBuilder implements Tracer.SpanBuilder {
 
+  /** The number of tags held inline before the tag storage grows. */
+  private static final int INLINE_TAGS = 4;
+
   /** The tracer to report spans to. */
   private final WavefrontTracer tracer;
 
   /** The operation name. Required for every span per opentracing spec. */
   private final String operationName;
 
-  /** The list of parent references. */
+  /** The first parent, which is the only parent of most spans. */
+  private WavefrontSpanContext parent = null;
+
+  /** The list of all parent references, only used if there are several parents. */
   private List<Reference> parents = null;
 
   /** The list of follows from references. */
@@ -42,7 +49,9 @@ public class WavefrontSpanBuilder implements Tracer.SpanBuilder {
 
   private long startTimeMicros;
   private boolean ignoreActiveSpan = false;
-  private final List<Pair<String, String>> tags = new ArrayList<>();
+  private TagStore tags = null;
+  // whether the tags were handed over to a started span and must be copied before changing them
+  private boolean tagsAdopted = false;
 
   public WavefrontSpanBuilder(String operationName, WavefrontTracer tracer) {
     this.operationName = operationName;
@@ -65,17 +74,22 @@ public class WavefrontSpanBuilder implements Tracer.SpanBuilder {
         (!References.CHILD_OF.equals(type) && !References.FOLLOWS_FROM.equals(type))) {
       return this;
     }
-    Reference ref = new Reference((WavefrontSpanContext) spanContext, type);
+    WavefrontSpanContext context = (WavefrontSpanContext) spanContext;
     if (References.CHILD_OF.equals(type)) {
-      if (parents == null) {
-        parents = new ArrayList<>(1);
+      if (parent == null) {
+        parent = context;
+      } else {
+        if (parents == null) {
+          parents = new ArrayList<>(2);
+          parents.add(new Reference(parent, References.CHILD_OF));
+        }
+        parents.add(new Reference(context, References.CHILD_OF));
       }
-      parents.add(ref);
-    } else if (References.FOLLOWS_FROM.equals(type)) {
+    } else {
       if (follows == null) {
         follows = new ArrayList<>(1);
       }
-      follows.add(ref);
+      follows.add(new Reference(context, type));
     }
     return this;
   }
@@ -108,7 +122,13 @@ public class WavefrontSpanBuilder implements Tracer.SpanBuilder {
 
   private Tracer.SpanBuilder setTagObject(String key, Object value) {
     if (key != null && !key.isEmpty() && value != null) {
-      tags.add(Pair.of(key, value.toString()));
+      if (tags == null) {
+        tags = new TagStore(tracer.getGlobalTags(), INLINE_TAGS);
+      } else if (tagsAdopted) {
+        tags = tags.copy();
+        tagsAdopted = false;
+      }
+      tags.add(key, value);
     }
     return this;
   }
@@ -131,64 +151,92 @@ public class WavefrontSpanBuilder implements Tracer.SpanBuilder {
 
   @Override
   public Span start() {
-    long startTimeNanos = 0;
+    long startTimeNanos = WavefrontSpan.NO_START_NANOS;
     if (startTimeMicros == 0) {
       startTimeMicros = tracer.currentTimeMicros();
-      startTimeNanos = System.nanoTime();
+      startTimeNanos = tracer.nanoTime();
     }
     WavefrontSpanContext ctx = createSpanContext();
     if (!ctx.isSampled()) {
       // this indicates a root span and that no decision has been inherited from a parent span.
       // perform head based sampling as no sampling decision has been obtained for this span yet.
-      boolean decision = tracer.sample(operationName, ctx.getTraceId().getLeastSignificantBits(), 0);
-      ctx = ctx.withSamplingDecision(decision);
+      if (tracer.shed(operationName, ctx.getTraceIdLow())) {
+        // load shedding is final, late samplers do not revive the span or its children
+        ctx = ctx.withShedDecision();
+      } else {
+        boolean decision = tracer.sample(operationName, ctx.getTraceIdLow(), 0);
+        ctx = ctx.withSamplingDecision(decision);
+      }
+    }
+    TagStore spanTags = tags;
+    if (spanTags != null) {
+      if (tagsAdopted) {
+        // the builder is reused; the previously started span owns the tags
+        spanTags = spanTags.copy();
+      }
+      tagsAdopted = true;
+      tags = spanTags;
     }
-    return new WavefrontSpan(tracer, operationName, ctx, startTimeMicros, startTimeNanos, parents,
-        follows, tags);
+    return new WavefrontSpan(tracer, operationName, ctx, startTimeMicros, startTimeNanos, parent,
+        parents, follows, spanTags);
   }
 
   private WavefrontSpanContext createSpanContext() {
-    UUID spanId = UUID.randomUUID();
+    IdGenerator idGenerator = tracer.getIdGenerator();
+    long spanIdHigh = idGenerator.nextSpanIdHigh();
+    long spanIdLow = idGenerator.nextSpanIdLow();
     WavefrontSpanContext traceCtx = traceAncestry();
-    UUID traceId = (traceCtx == null) ? UUID.randomUUID() : traceCtx.getTraceId();
-    Boolean sampling = (traceCtx == null) ? null : traceCtx.getSamplingDecision();
-    return new WavefrontSpanContext(traceId, spanId, getBaggage(), sampling);
+    if (traceCtx == null) {
+      return new WavefrontSpanContext(idGenerator.nextTraceIdHigh(),
+          idGenerator.nextTraceIdLow(), spanIdHigh, spanIdLow, getBaggage(), null, true);
+    }
+    return new WavefrontSpanContext(traceCtx.getTraceIdHigh(), traceCtx.getTraceIdLow(),
+        spanIdHigh, spanIdLow, getBaggage(), traceCtx.getSamplingDecision(), true,
+        traceCtx.isShed());
   }
 
-  @Nullable
-  private Map<String, String> getBaggage() {
-    return addItems(follows, addItems(parents, null));
+  private Baggage getBaggage() {
+    Baggage baggage = parents == null && parent != null ?
+        addItems(parent, Baggage.EMPTY) : addItems(parents, Baggage.EMPTY);
+    return addItems(follows, baggage);
   }
 
   /**
-   * Gets a map containing baggage items of all the given references.
+   * Gets the baggage items of all the given references. The baggage of the first reference that
+   * has any is shared rather than copied, and items already present are not added again.
    *
    * @param references the list of references to process
-   * @param baggage the map to add items to, can be null in which case a new map is created/returned
-   * @return the map containing baggage items from all references
+   * @param baggage the baggage to add items to
+   * @return the baggage containing items from all references
    */
-  @Nullable
-  private Map<String, String> addItems(List<Reference> references,
-                                       @Nullable Map<String, String> baggage) {
+  private Baggage addItems(List<Reference> references, Baggage baggage) {
     if (references != null && !references.isEmpty()) {
       for (Reference ref : references) {
-        Map<String, String> refBaggage = ref.getSpanContext().getBaggage();
-        if (refBaggage != null && !refBaggage.isEmpty()) {
-          if (baggage == null) {
-            baggage = new HashMap<>();
-          }
-          baggage.putAll(refBaggage);
-        }
+        baggage = addItems(ref.getSpanContext(), baggage);
       }
     }
     return baggage;
   }
 
+  private static Baggage addItems(WavefrontSpanContext context, Baggage baggage) {
+    Baggage refBaggage = context.getBaggage();
+    if (refBaggage.isEmpty() || refBaggage == baggage) {
+      return baggage;
+    }
+    if (baggage.isEmpty()) {
+      return refBaggage;
+    }
+    for (Map.Entry<String, String> item : refBaggage.entrySet()) {
+      baggage = baggage.with(item.getKey(), item.getValue());
+    }
+    return baggage;
+  }
+
   @Nullable
   private WavefrontSpanContext traceAncestry() {
-    if (parents != null && !parents.isEmpty()) {
+    if (parent != null) {
       // prefer child_of relationship for assigning traceId
-      return parents.get(0).getSpanContext();
+      return parent;
     }
     if (follows != null && !follows.isEmpty()) {
       return follows.get(0).getSpanContext();
@@ -1,7 +1,7 @@
 package com.wavefront.opentracing;
 
-import java.util.Collections;
-import java.util.HashMap;
+import com.wavefront.opentracing.common.HexCodec;
+
 import java.util.Map;
 import java.util.UUID;
 
@@ -12,41 +12,108 @@ import io.opentracing.SpanContext;
 /**
  * Represents a Wavefront SpanContext based on OpenTracing's {@link SpanContext}.
  *
+ * Trace and span ids are held as primitive longs. {@link UUID} and string views of the ids are
+ * created lazily and cached. Baggage is held in an immutable {@link Baggage} that is shared with
+ * the contexts derived from this one.
+ *
  * @author Vikram Raman
  */
 public class WavefrontSpanContext implements SpanContext {
 
-  private final UUID traceId;
-  private final UUID spanId;
+  private final long traceIdHigh;
+  private final long traceIdLow;
+  private final long spanIdHigh;
+  private final long spanIdLow;
   private final Boolean samplingDecision;
-  private final Map<String, String> baggage;
+  private final Baggage baggage;
+  /** Whether the context was created by this process rather than extracted from a carrier. */
+  private final boolean local;
+  /** Whether load shedding dropped the trace in this process, which late sampling must honor. */
+  private final boolean shed;
+
+  // Lazily created views of the ids. UUID and String are immutable, so racing initializations
+  // are benign and these need not be volatile.
+  @Nullable
+  private UUID traceId;
+  @Nullable
+  private UUID spanId;
+  @Nullable
+  private String traceIdString;
+  @Nullable
+  private String spanIdString;
 
   public WavefrontSpanContext(UUID traceId, UUID spanId) {
     this(traceId, spanId, null, null);
   }
 
   public WavefrontSpanContext(UUID traceId, UUID spanId, Map<String, String> baggage, Boolean decision) {
+    this(traceId.getMostSignificantBits(), traceId.getLeastSignificantBits(),
+        spanId.getMostSignificantBits(), spanId.getLeastSignificantBits(), baggage, decision);
     this.traceId = traceId;
     this.spanId = spanId;
+  }
+
+  public WavefrontSpanContext(long traceIdHigh, long traceIdLow, long spanIdHigh, long spanIdLow,
+                              Map<String, String> baggage, Boolean decision) {
+    this(traceIdHigh, traceIdLow, spanIdHigh, spanIdLow, baggage, decision, false);
+  }
+
+  WavefrontSpanContext(long traceIdHigh, long traceIdLow, long spanIdHigh, long spanIdLow,
+                       Map<String, String> baggage, Boolean decision, boolean local) {
+    this(traceIdHigh, traceIdLow, spanIdHigh, spanIdLow, baggage, decision, local, false);
+  }
+
+  WavefrontSpanContext(long traceIdHigh, long traceIdLow, long spanIdHigh, long spanIdLow,
+                       Map<String, String> baggage, Boolean decision, boolean local,
+                       boolean shed) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
+    this.spanIdHigh = spanIdHigh;
+    this.spanIdLow = spanIdLow;
     this.samplingDecision = decision;
+    this.local = local;
+    this.shed = shed;
 
     // expected that most contexts will have no bagagge items except when propagated
-    this.baggage = (baggage == null) ? Collections.emptyMap() : baggage;
+    this.baggage = Baggage.of(baggage);
+  }
+
+  /**
+   * Copies the ids and their cached views of the given context.
+   */
+  private WavefrontSpanContext(WavefrontSpanContext other, Map<String, String> baggage,
+                               Boolean decision, boolean shed) {
+    this(other.traceIdHigh, other.traceIdLow, other.spanIdHigh, other.spanIdLow, baggage,
+        decision, other.local, shed);
+    this.traceId = other.traceId;
+    this.spanId = other.spanId;
+    this.traceIdString = other.traceIdString;
+    this.spanIdString = other.spanIdString;
   }
 
   @Override
   public String toTraceId() {
-    return traceId.toString();
+    String result = traceIdString;
+    if (result == null) {
+      result = HexCodec.toUuidString(traceIdHigh, traceIdLow);
+      traceIdString = result;
+    }
+    return result;
   }
 
   @Override
   public String toSpanId() {
-    return spanId.toString();
+    String result = spanIdString;
+    if (result == null) {
+      result = HexCodec.toUuidString(spanIdHigh, spanIdLow);
+      spanIdString = result;
+    }
+    return result;
   }
 
   @Override
   public Iterable<Map.Entry<String, String>> baggageItems() {
-    return Collections.unmodifiableMap(baggage).entrySet();
+    return baggage.entrySet();
   }
 
   @Nullable
@@ -55,26 +122,84 @@ public class WavefrontSpanContext implements SpanContext {
   }
 
   public WavefrontSpanContext withBaggageItem(String key, String value) {
-    Map<String, String> items = new HashMap<>(baggage);
-    items.put(key, value);
-    return new WavefrontSpanContext(traceId, spanId, items, samplingDecision);
+    return new WavefrontSpanContext(this, baggage.with(key, value), samplingDecision, shed);
   }
 
-  Map<String, String> getBaggage() {
-    // protected method for internal use. don't wrap within unmodifiable for memory efficiency.
+  Baggage getBaggage() {
+    // package-private method for internal use, the baggage is immutable and safe to share.
     return baggage;
   }
 
   WavefrontSpanContext withSamplingDecision(boolean decision) {
-    return new WavefrontSpanContext(traceId, spanId, baggage, Boolean.valueOf(decision));
+    return new WavefrontSpanContext(this, baggage, Boolean.valueOf(decision), shed);
+  }
+
+  /**
+   * @return a copy of this context whose trace was dropped by load shedding
+   */
+  WavefrontSpanContext withShedDecision() {
+    return new WavefrontSpanContext(this, baggage, Boolean.FALSE, true);
+  }
+
+  /**
+   * @return whether load shedding dropped the trace of this context in this process
+   */
+  boolean isShed() {
+    return shed;
   }
 
   public UUID getTraceId() {
-    return traceId;
+    UUID result = traceId;
+    if (result == null) {
+      result = new UUID(traceIdHigh, traceIdLow);
+      traceId = result;
+    }
+    return result;
   }
 
   public UUID getSpanId() {
-    return spanId;
+    UUID result = spanId;
+    if (result == null) {
+      result = new UUID(spanIdHigh, spanIdLow);
+      spanId = result;
+    }
+    return result;
+  }
+
+  /**
+   * @return the most significant 64 bits of the trace id
+   */
+  public long getTraceIdHigh() {
+    return traceIdHigh;
+  }
+
+  /**
+   * @return the least significant 64 bits of the trace id
+   */
+  public long getTraceIdLow() {
+    return traceIdLow;
+  }
+
+  /**
+   * @return the most significant 64 bits of the span id
+   */
+  public long getSpanIdHigh() {
+    return spanIdHigh;
+  }
+
+  /**
+   * @return the least significant 64 bits of the span id
+   */
+  public long getSpanIdLow() {
+    return spanIdLow;
+  }
+
+  /**
+   * @return true if the context belongs to a span started by this process, false if it was
+   * extracted from a carrier or created by the caller
+   */
+  boolean isLocal() {
+    return local;
   }
 
   public boolean isSampled() {
@@ -89,8 +214,8 @@ public class WavefrontSpanContext implements SpanContext {
   @Override
   public String toString() {
     return "WavefrontSpanContext{" +
-        "traceId=" + traceId +
-        ", spanId=" + spanId +
+        "traceId=" + toTraceId() +
+        ", spanId=" + toSpanId() +
         '}';
   }
 }
@@ -1,12 +1,19 @@
 package com.wavefront.opentracing;
 
 import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Counter;
 import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.clock.AnchoredClock;
+import com.wavefront.opentracing.clock.Clock;
+import com.wavefront.opentracing.id.IdGenerator;
+import com.wavefront.opentracing.id.RandomIdGenerator;
 import com.wavefront.opentracing.propagation.Propagator;
 import com.wavefront.opentracing.propagation.PropagatorRegistry;
 import com.wavefront.opentracing.reporting.CompositeReporter;
 import com.wavefront.opentracing.reporting.Reporter;
 import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.opentracing.sampling.AdaptiveSampler;
+import com.wavefront.opentracing.sampling.TracePolicy;
 import com.wavefront.sdk.appagent.jvm.reporter.WavefrontJvmReporter;
 import com.wavefront.sdk.common.Pair;
 import com.wavefront.sdk.common.application.ApplicationTags;
@@ -18,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +33,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
@@ -35,6 +42,7 @@ import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.propagation.Format;
+import io.opentracing.tag.Tags;
 import io.opentracing.util.ThreadLocalScopeManager;
 
 import static com.wavefront.sdk.common.Constants.APPLICATION_TAG_KEY;
@@ -55,8 +63,14 @@ public class WavefrontTracer implements Tracer, Closeable {
   private final ScopeManager scopeManager;
   private final PropagatorRegistry registry;
   private final Reporter reporter;
-  private final List<Pair<String, String>> tags;
-  private final List<Sampler> samplers;
+  private final TagStore globalTags;
+  private final String globalComponentTagValue;
+  private final boolean globalErrorTag;
+  private final SamplerPipeline samplerPipeline;
+  @Nullable
+  private final AdaptiveSampler adaptiveSampler;
+  private final IdGenerator idGenerator;
+  private final Clock clock;
 
   @Nullable
   private final WavefrontInternalReporter wfInternalReporter;
@@ -66,24 +80,40 @@ public class WavefrontTracer implements Tracer, Closeable {
   private final HeartbeaterService heartbeaterService;
   @Nullable
   private final WavefrontJvmReporter wfJvmReporter;
+  @Nullable
+  private final DerivedMetricsCache derivedMetricsCache;
+  @Nullable
+  private final TailSamplingBuffer tailSamplingBuffer;
+  @Nullable
+  private final SpanFinisher spanFinisher;
+  @Nullable
+  private final Counter spansDiscarded;
+  private final int maxSpanLogs;
+  @Nullable
+  private final Counter spanLogsDropped;
   private final Supplier<Long> reportFrequencyMillis;
   private final ApplicationTags applicationTags;
 
   private final static String WAVEFRONT_GENERATED_COMPONENT = "wavefront-generated";
   private final static String OPENTRACING_COMPONENT = "opentracing";
   private final static String JAVA_COMPONENT = "java";
-  private final static String INVOCATION_SUFFIX = ".invocation";
-  private final static String ERROR_SUFFIX = ".error";
-  private final static String TOTAL_TIME_SUFFIX = ".total_time.millis";
-  private final static String DURATION_SUFFIX = ".duration.micros";
-  private final static String OPERATION_NAME_TAG = "operationName";
+  // Bounds the number of cached RED metric handles
+  private final static int MAX_DERIVED_METRICS_CACHE_SIZE = 1000;
+  private final static int DEFAULT_MAX_SPAN_LOGS = 32;
 
   private WavefrontTracer(Builder builder) {
     scopeManager = builder.scopeManager;
     this.registry = builder.registry;
     this.reporter = builder.reporter;
-    this.tags = builder.tags;
-    this.samplers = builder.samplers;
+    // global tags are shared by all spans instead of being copied into each of them
+    this.globalTags = TagStore.sharedBlock(builder.tags);
+    String component = globalTags.getLastValue(COMPONENT_TAG_KEY);
+    this.globalComponentTagValue = component == null ? NULL_TAG_VAL : component;
+    this.globalErrorTag = globalTags.getLastValue(Tags.ERROR.getKey()) != null;
+    this.samplerPipeline = new SamplerPipeline(builder.samplers);
+    this.adaptiveSampler = builder.adaptiveSampler;
+    this.idGenerator = builder.idGenerator;
+    this.clock = builder.clock == null ? new AnchoredClock() : builder.clock;
     this.applicationTags = builder.applicationTags;
     this.reportFrequencyMillis = builder.reportingFrequencyMillis;
 
@@ -99,17 +129,41 @@ public class WavefrontTracer implements Tracer, Closeable {
       wfDerivedReporter = tuple.wfDerivedReporter;
       wfJvmReporter = tuple.wfJvmReporter;
       heartbeaterService = tuple.heartbeaterService;
+      derivedMetricsCache = new DerivedMetricsCache(wfDerivedReporter, applicationTags,
+          wfSpanReporter.getWavefrontSender(), wfSpanReporter.getSource(), clock,
+          MAX_DERIVED_METRICS_CACHE_SIZE);
+      derivedMetricsCache.start(reportFrequencyMillis.get());
       wfSpanReporter.setMetricsReporter(wfInternalReporter);
+      if (reporter instanceof CompositeReporter) {
+        ((CompositeReporter) reporter).setMetricsReporter(wfInternalReporter);
+      }
+      samplerPipeline.setMetricsReporter(wfInternalReporter);
+      if (adaptiveSampler != null) {
+        wfInternalReporter.newGauge(new MetricName("sampler.adaptive.rate",
+            Collections.emptyMap()), () -> adaptiveSampler::getRate);
+      }
     } else {
       wfInternalReporter = null;
       wfDerivedReporter = null;
       wfJvmReporter = null;
       heartbeaterService = null;
+      derivedMetricsCache = null;
     }
+    spansDiscarded = wfInternalReporter == null ? null :
+        wfInternalReporter.newCounter(new MetricName("spans.discarded", Collections.emptyMap()));
+    maxSpanLogs = builder.maxSpanLogs;
+    spanLogsDropped = wfInternalReporter == null || maxSpanLogs == 0 ? null :
+        wfInternalReporter.newCounter(new MetricName("spans.logs.dropped",
+            Collections.emptyMap()));
+    spanFinisher = builder.finisherThreads == 0 ? null :
+        new SpanFinisher(builder.finisherThreads, builder.finisherQueueSize, wfInternalReporter);
+    tailSamplingBuffer = builder.tracePolicies.isEmpty() ? null :
+        new TailSamplingBuffer(builder.tracePolicies, builder.tailSamplingTimeoutMillis,
+            builder.tailSamplingMaxBytes, this::reportSpan, wfInternalReporter);
   }
 
   @Nullable
-  private WavefrontSpanReporter getWavefrontSpanReporter(Reporter reporter) {
+  private static WavefrontSpanReporter getWavefrontSpanReporter(Reporter reporter) {
     if (reporter instanceof WavefrontSpanReporter) {
       return (WavefrontSpanReporter) reporter;
     }
@@ -191,8 +245,7 @@ public class WavefrontTracer implements Tracer, Closeable {
 
   @Override
   public Span activeSpan() {
-    Scope scope = this.scopeManager.active();
-    return scope == null ? null : scope.span();
+    return this.scopeManager.activeSpan();
   }
 
   @Override
@@ -223,85 +276,43 @@ public class WavefrontTracer implements Tracer, Closeable {
     return propagator.extract(carrier);
   }
 
+  /**
+   * Decides whether load shedding drops a trace. Only consulted for the head decision, ahead of
+   * the samplers, so that spans sampled late are shed as well.
+   */
+  boolean shed(String operationName, long traceId) {
+    return adaptiveSampler != null && !adaptiveSampler.sample(operationName, traceId, 0);
+  }
+
   boolean sample(String operationName, long traceId, long duration) {
-    if (samplers == null || samplers.isEmpty()) {
-      return true;
-    }
-    boolean earlySampling = (duration == 0);
-    for (Sampler sampler : samplers) {
-      boolean doSample = earlySampling == sampler.isEarly();
-      if (doSample && sampler.sample(operationName, traceId, duration)) {
-        if (logger.isLoggable(Level.FINER)) {
-          logger.finer(sampler.getClass().getSimpleName() + "=" + true +
-              " op=" + operationName);
-        }
-        return true;
-      }
-      if (logger.isLoggable(Level.FINER)) {
-        logger.finer(sampler.getClass().getSimpleName() + "=" + false +
-            " op=" + operationName);
-      }
-    }
-    return false;
+    return samplerPipeline.sample(operationName, traceId, duration);
+  }
+
+  boolean sampleFinished(String operationName, long traceId, long duration) {
+    // early samplers, which may not be deterministic, are not consulted again
+    return samplerPipeline.sampleFinished(operationName, traceId, duration);
   }
 
   void reportWavefrontGeneratedData(WavefrontSpan span) {
-    if (wfDerivedReporter == null) {
+    if (derivedMetricsCache == null) {
       // WavefrontSpanReporter not set, so no tracing spans will be reported as metrics/histograms.
       return;
     }
-    // Need to sanitize metric name as application, service and operation names can have spaces
-    // and other invalid metric name characters
-    Map<String, String> pointTags = new HashMap<String, String>() {{
-      put(OPERATION_NAME_TAG, span.getOperationName());
-      put(COMPONENT_TAG_KEY, span.getComponentTagValue());
-    }};
-
-    String application = overrideWithSingleValuedSpanTag(span, pointTags, APPLICATION_TAG_KEY,
+    String application = singleValuedSpanTagOrDefault(span, APPLICATION_TAG_KEY,
         applicationTags.getApplication());
-    String service = overrideWithSingleValuedSpanTag(span, pointTags, SERVICE_TAG_KEY,
+    String service = singleValuedSpanTagOrDefault(span, SERVICE_TAG_KEY,
         applicationTags.getService());
-    overrideWithSingleValuedSpanTag(span, pointTags, CLUSTER_TAG_KEY, applicationTags.getCluster());
-    overrideWithSingleValuedSpanTag(span, pointTags, SHARD_TAG_KEY, applicationTags.getShard());
-
-    String metricNamePrefix = application + "." + service + "." + span.getOperationName();
-    wfDerivedReporter.newCounter(new MetricName(sanitize(metricNamePrefix + INVOCATION_SUFFIX),
-        pointTags)).inc();
-    if (span.isError()) {
-      wfDerivedReporter.newCounter(new MetricName(sanitize(metricNamePrefix + ERROR_SUFFIX),
-          pointTags)).inc();
-    }
-    long spanDurationMicros = span.getDurationMicroseconds();
-    // Convert from micros to millis and add to duration counter
-    wfDerivedReporter.newCounter(new MetricName(sanitize(metricNamePrefix + TOTAL_TIME_SUFFIX),
-        pointTags)).inc(spanDurationMicros / 1000);
-    // Support duration in microseconds instead of milliseconds
-    wfDerivedReporter.newWavefrontHistogram(new MetricName(sanitize(metricNamePrefix + DURATION_SUFFIX),
-        pointTags)).update(spanDurationMicros);
+    String cluster = singleValuedSpanTagOrDefault(span, CLUSTER_TAG_KEY,
+        applicationTags.getCluster());
+    String shard = singleValuedSpanTagOrDefault(span, SHARD_TAG_KEY, applicationTags.getShard());
+    derivedMetricsCache.get(application, service, cluster, shard, span.getOperationName(),
+        span.getComponentTagValue()).update(span.getDurationMicroseconds(), span.isError());
   }
 
-  private String overrideWithSingleValuedSpanTag(WavefrontSpan span, Map<String, String> pointTags,
-                                                 String key, String defaultValue) {
+  private String singleValuedSpanTagOrDefault(WavefrontSpan span, String key,
+                                              String defaultValue) {
     String spanTagValue = span.getSingleValuedTagValue(key);
-    if (spanTagValue == null) {
-      return defaultValue;
-    }
-    // If span tag value is different from the default, we need to override the point tag
-    if (!spanTagValue.equals(defaultValue)) {
-      pointTags.put(key, spanTagValue);
-    }
-    return spanTagValue;
-  }
-
-  private String sanitize(String s) {
-    Pattern WHITESPACE = Pattern.compile("[\\s]+");
-    final String whitespaceSanitized = WHITESPACE.matcher(s).replaceAll("-");
-    if (s.contains("\"") || s.contains("'")) {
-      // for single quotes, once we are double-quoted, single quotes can exist happily inside it.
-      return whitespaceSanitized.replaceAll("\"", "\\\\\"");
-    } else {
-      return whitespaceSanitized;
-    }
+    return spanTagValue == null ? defaultValue : spanTagValue;
   }
 
   void reportSpan(WavefrontSpan span) {
@@ -313,17 +324,101 @@ public class WavefrontTracer implements Tracer, Closeable {
     }
   }
 
-  long currentTimeMicros() {
-    return System.currentTimeMillis() * 1000;
+  /**
+   * @return the buffer deciding sampling per trace, or null if tail sampling is not enabled
+   */
+  @Nullable
+  TailSamplingBuffer getTailSamplingBuffer() {
+    return tailSamplingBuffer;
+  }
+
+  /**
+   * @return the finisher processing finished spans in the background, or null if spans are
+   * processed on the thread that finishes them
+   */
+  @Nullable
+  SpanFinisher getSpanFinisher() {
+    return spanFinisher;
+  }
+
+  /**
+   * @return the counter of spans discarded by sampling, or null if there is no
+   * WavefrontSpanReporter
+   */
+  @Nullable
+  Counter getSpansDiscarded() {
+    return spansDiscarded;
+  }
+
+  /**
+   * @return the maximum number of log events recorded per span, 0 if logs are not recorded
+   */
+  int getMaxSpanLogs() {
+    return maxSpanLogs;
+  }
+
+  /**
+   * @return whether a span that was not sampled when it started may still be reported, by being
+   * sampled when it finishes or kept by tail sampling
+   */
+  boolean mayReportUnsampledSpans() {
+    return tailSamplingBuffer != null || samplerPipeline.samplesFinished();
+  }
+
+  /**
+   * Counts a log event dropped since its span has recorded the maximum number of events.
+   */
+  void spanLogDropped() {
+    if (spanLogsDropped != null) {
+      spanLogsDropped.inc();
+    }
+  }
+
+  /**
+   * @return the current time of the tracer's clock in microseconds since the epoch, as used for
+   * the start timestamps of spans
+   */
+  public long currentTimeMicros() {
+    return clock.currentTimeMicros();
   }
 
   /**
-   * Gets the list of global tags to be added to all spans.
+   * @return the current value of the clock's monotonic time source in nanoseconds
+   */
+  long nanoTime() {
+    return clock.nanoTime();
+  }
+
+  /**
+   * Gets the generator of trace and span ids for new spans.
    *
-   * @return the list of global tags
+   * @return the id generator
+   */
+  IdGenerator getIdGenerator() {
+    return idGenerator;
+  }
+
+  /**
+   * Gets the immutable block of global tags shared by all spans.
+   *
+   * @return the global tags
+   */
+  TagStore getGlobalTags() {
+    return globalTags;
+  }
+
+  /**
+   * @return the value of the component tag among the global tags, or the null tag value
    */
-  List<Pair<String, String>> getTags() {
-    return tags;
+  String getGlobalComponentTagValue() {
+    return globalComponentTagValue;
+  }
+
+  /**
+   * @return whether the error tag is set among the global tags
+   */
+  boolean hasGlobalErrorTag() {
+    return globalErrorTag;
   }
 
   /**
@@ -337,6 +432,17 @@ public class WavefrontTracer implements Tracer, Closeable {
     // application metadata, will not have repeated tags and will be low cardinality tags
     private final ApplicationTags applicationTags;
     private final List<Sampler> samplers;
+    @Nullable
+    private AdaptiveSampler adaptiveSampler = null;
+    private final List<TracePolicy> tracePolicies = new ArrayList<>();
+    private long tailSamplingTimeoutMillis = 30000;
+    private long tailSamplingMaxBytes = 64 * 1024 * 1024;
+    private int finisherThreads = 0;
+    private int finisherQueueSize = 0;
+    private int maxSpanLogs = DEFAULT_MAX_SPAN_LOGS;
+    private IdGenerator idGenerator = new RandomIdGenerator();
+    // created when the tracer is built, since anchoring the default clock takes up to a millisecond
+    private Clock clock = null;
     // Default to 1min
     private Supplier<Long> reportingFrequencyMillis = () -> 60000L;
     private boolean includeJvmMetrics = true;
@@ -426,7 +532,129 @@ public class WavefrontTracer implements Tracer, Closeable {
     }
 
     /**
-     * Scope manager to use for span management.
+     * Shed whole traces when the in-memory buffer of the {@link WavefrontSpanReporter} fills up,
+     * instead of letting the reporter drop random spans once the buffer is full.
+     *
+     * The rate of traces that are kept is lowered while the buffer's utilization is above the high
+     * watermark and raised again while it is below the low watermark. The decision is made when a
+     * trace starts, ahead of the configured samplers, and late samplers do not sample spans of a
+     * shed trace when they finish. The current rate is reported as the
+     * {@code sampler.adaptive.rate} gauge. See {@link AdaptiveSampler}.
+     *
+     * @param lowWatermark Buffer utilization below which the rate is raised, e.g. 0.5
+     * @param highWatermark Buffer utilization above which the rate is lowered, e.g. 0.8
+     * @param minRate Rate below which traces are not shed, between 0.0 and 1.0
+     * @return {@code this}
+     * @throws IllegalArgumentException if the watermarks or the min rate are invalid
+     * @throws IllegalStateException if the tracer does not report to a WavefrontSpanReporter
+     */
+    public Builder withAdaptiveSampling(double lowWatermark, double highWatermark,
+                                        double minRate) {
+      WavefrontSpanReporter wfSpanReporter = getWavefrontSpanReporter(reporter);
+      if (wfSpanReporter == null) {
+        throw new IllegalStateException("adaptive sampling requires a WavefrontSpanReporter");
+      }
+      this.adaptiveSampler = new AdaptiveSampler(wfSpanReporter::getQueueUtilization,
+          lowWatermark, highWatermark, minRate);
+      return this;
+    }
+
+    /**
+     * Policy for tail sampling, which buffers the finished spans of each trace and decides
+     * whether to report the trace as a whole once its local root span finishes, i.e. the first
+     * span of the trace in this process. A trace is reported if any of its spans was sampled by
+     * the samplers or if any policy keeps it. See
+     * {@link com.wavefront.opentracing.sampling.TracePolicies} for common policies.
+     *
+     * Policies can be chained by calling this method multiple times. Decisions are OR'd when
+     * multiple policies are used.
+     *
+     * @param policy the trace policy
+     * @return {@code this}
+     */
+    public Builder withTailSampling(TracePolicy policy) {
+      if (policy == null) {
+        throw new IllegalArgumentException("invalid trace policy");
+      }
+      this.tracePolicies.add(policy);
+      return this;
+    }
+
+    /**
+     * Set how long tail sampling waits for the local root span of a trace to finish before
+     * deciding the trace with the spans buffered so far. Defaults to 30 seconds.
+     *
+     * @param timeoutMillis the timeout, in milliseconds
+     * @return {@code this}
+     * @throws IllegalArgumentException if the timeout is not greater than 0
+     */
+    public Builder withTailSamplingTimeoutMillis(long timeoutMillis) {
+      if (timeoutMillis <= 0) {
+        throw new IllegalArgumentException("invalid tail sampling timeout");
+      }
+      this.tailSamplingTimeoutMillis = timeoutMillis;
+      return this;
+    }
+
+    /**
+     * Set the estimated memory ceiling of the spans buffered by tail sampling. Beyond it, the
+     * oldest traces are decided with the spans buffered so far. Defaults to 64 MB.
+     *
+     * @param maxBytes the memory ceiling, in bytes
+     * @return {@code this}
+     * @throws IllegalArgumentException if the ceiling is not greater than 0
+     */
+    public Builder withTailSamplingMaxBytes(long maxBytes) {
+      if (maxBytes <= 0) {
+        throw new IllegalArgumentException("invalid tail sampling memory ceiling");
+      }
+      this.tailSamplingMaxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Process finished spans on background worker threads. {@code finish()} then only records the
+     * span's duration, while duration-based sampling, reporting and RED metrics are handled by
+     * the workers. When the queue of finished spans is full, the finishing thread processes its
+     * span itself.
+     *
+     * @param workerThreads Number of worker threads
+     * @param maxQueueSize Max number of finished spans waiting for a worker
+     * @return {@code this}
+     * @throws IllegalArgumentException if the number of threads or the queue size is not greater
+     *                                  than 0
+     */
+    public Builder withAsyncFinish(int workerThreads, int maxQueueSize) {
+      if (workerThreads <= 0) {
+        throw new IllegalArgumentException("invalid number of finisher threads");
+      }
+      if (maxQueueSize <= 0) {
+        throw new IllegalArgumentException("invalid finisher queue size");
+      }
+      this.finisherThreads = workerThreads;
+      this.finisherQueueSize = maxQueueSize;
+      return this;
+    }
+
+    /**
+     * Maximum number of log events recorded per span. Further events are dropped. Defaults to
+     * 32; 0 disables recording span logs. Logs are only recorded for spans that may be reported.
+     *
+     * @param maxEvents Max number of log events per span
+     * @return {@code this}
+     * @throws IllegalArgumentException if the number of events is negative
+     */
+    public Builder withMaxSpanLogs(int maxEvents) {
+      if (maxEvents < 0) {
+        throw new IllegalArgumentException("invalid max span logs");
+      }
+      this.maxSpanLogs = maxEvents;
+      return this;
+    }
+
+    /**
+     * Scope manager to use for span management. Defaults to {@link ThreadLocalScopeManager}; a
+     * {@link WavefrontScopeManager} avoids allocating a scope on every activation.
      *
      * @param scopeManager
      * @return {@code this}
@@ -436,6 +664,34 @@ public class WavefrontTracer implements Tracer, Closeable {
       return this;
     }
 
+    /**
+     * Generator of trace and span ids for new spans. Defaults to {@link RandomIdGenerator}.
+     *
+     * @param idGenerator the id generator
+     * @return {@code this}
+     * @throws IllegalArgumentException if the id generator is null
+     */
+    public Builder withIdGenerator(IdGenerator idGenerator) {
+      if (idGenerator == null) {
+        throw new IllegalArgumentException("invalid id generator");
+      }
+      this.idGenerator = idGenerator;
+      return this;
+    }
+
+    /**
+     * Clock providing the timestamps and durations of spans. Defaults to {@link AnchoredClock},
+     * which provides microsecond timestamps. Use a
+     * {@link com.wavefront.opentracing.clock.CoarseClock} to trade resolution for cheaper reads.
+     *
+     * @param clock the clock
+     * @return {@code this}
+     */
+    public Builder withClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+
     /**
      * Invoke this method if you already are publishing JVM metrics from your app to Wavefront.
      *
@@ -483,6 +739,22 @@ public class WavefrontTracer implements Tracer, Closeable {
 
   @Override
   public void close() {
+    if (spanFinisher != null) {
+      // process the spans that are still queued
+      spanFinisher.close();
+    }
+    if (tailSamplingBuffer != null) {
+      // report or discard the traces that are still pending
+      tailSamplingBuffer.close();
+    }
+    // flush the derived metrics while the sender, which the reporter closes, is still open
+    if (derivedMetricsCache != null) {
+      // merge the updates accumulated since the last flush
+      derivedMetricsCache.close();
+    }
+    if (wfDerivedReporter != null) {
+      wfDerivedReporter.stop();
+    }
     try {
       this.reporter.close();
     } catch (IOException e) {
@@ -492,9 +764,6 @@ public class WavefrontTracer implements Tracer, Closeable {
     if (wfInternalReporter != null) {
       wfInternalReporter.stop();
     }
-    if (wfDerivedReporter != null) {
-      wfDerivedReporter.stop();
-    }
     if (wfJvmReporter != null) {
       wfJvmReporter.stop();
     }
@@ -0,0 +1,100 @@
+package com.wavefront.opentracing.clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * The default {@link Clock}. It anchors the wall-clock time to {@link System#nanoTime()} once and
+ * derives microsecond timestamps from the elapsed nanoseconds, whereas
+ * {@link System#currentTimeMillis()} only has millisecond resolution.
+ *
+ * Since the wall clock may be adjusted and the two time sources drift apart, the clock compares
+ * the derived time with the wall clock about once a second and re-anchors when they differ by
+ * more than a millisecond. Reading the time is a volatile read and a call to
+ * {@link System#nanoTime()}, and does not allocate between checks.
+ */
+public class AnchoredClock implements Clock {
+
+  private static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAX_DRIFT_MICROS = 1000;
+  // how long to wait for the wall clock to tick when anchoring
+  private static final long MAX_ANCHOR_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final LongSupplier wallMillis;
+  private final LongSupplier nanoTime;
+  private final AtomicReference<Anchor> anchor;
+
+  public AnchoredClock() {
+    this(System::currentTimeMillis, System::nanoTime);
+  }
+
+  AnchoredClock(LongSupplier wallMillis, LongSupplier nanoTime) {
+    this.wallMillis = wallMillis;
+    this.nanoTime = nanoTime;
+    this.anchor = new AtomicReference<>(initialAnchor());
+  }
+
+  /**
+   * Anchors the time at the start of a wall-clock millisecond, which makes the anchor accurate to
+   * the microsecond. Waits for at most a millisecond, after which a wall clock that has not
+   * ticked yet is anchored as is.
+   */
+  private Anchor initialAnchor() {
+    long start = wallMillis.getAsLong();
+    long deadline = nanoTime.getAsLong() + MAX_ANCHOR_WAIT_NANOS;
+    long millis;
+    long nanos;
+    do {
+      millis = wallMillis.getAsLong();
+      nanos = nanoTime.getAsLong();
+    } while (millis == start && nanos - deadline < 0);
+    return new Anchor(TimeUnit.MILLISECONDS.toMicros(millis), nanos);
+  }
+
+  @Override
+  public long currentTimeMicros() {
+    long nanos = nanoTime.getAsLong();
+    Anchor current = anchor.get();
+    long micros = current.micros(nanos);
+    if (nanos - current.nanos >= CHECK_INTERVAL_NANOS) {
+      micros = check(current, micros, nanos);
+    }
+    return micros;
+  }
+
+  /**
+   * Moves the anchor forward, to the wall-clock time if the derived time drifted from it.
+   *
+   * @return the current time in microseconds
+   */
+  private long check(Anchor current, long micros, long nanos) {
+    // the wall clock truncates to the millisecond, so compare with the middle of its millisecond
+    long wallMicros = TimeUnit.MILLISECONDS.toMicros(wallMillis.getAsLong());
+    if (Math.abs(micros - (wallMicros + MAX_DRIFT_MICROS / 2)) > MAX_DRIFT_MICROS) {
+      micros = wallMicros + MAX_DRIFT_MICROS / 2;
+    }
+    // if another thread moved the anchor, its time is as good as this one
+    anchor.compareAndSet(current, new Anchor(micros, nanos));
+    return micros;
+  }
+
+  @Override
+  public long nanoTime() {
+    return nanoTime.getAsLong();
+  }
+
+  private static final class Anchor {
+    private final long micros;
+    private final long nanos;
+
+    Anchor(long micros, long nanos) {
+      this.micros = micros;
+      this.nanos = nanos;
+    }
+
+    long micros(long nowNanos) {
+      return micros + (nowNanos - nanos) / 1000;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.wavefront.opentracing.clock;
+
+/**
+ * The source of the timestamps and durations of spans. A span's start timestamp is read from
+ * {@link #currentTimeMicros()}, and unless the span was started with an explicit timestamp, its
+ * duration is measured with {@link #nanoTime()}.
+ *
+ * Implementations are invoked on the threads that start and finish spans and must be
+ * thread-safe.
+ */
+public interface Clock {
+
+  /**
+   * Gets the current wall-clock time.
+   *
+   * @return the microseconds since the epoch
+   */
+  long currentTimeMicros();
+
+  /**
+   * Gets the value of a monotonic time source, only meaningful as the difference between two
+   * values, like {@link System#nanoTime()}.
+   *
+   * @return the current value of the time source in nanoseconds
+   */
+  long nanoTime();
+}
@@ -0,0 +1,71 @@
+package com.wavefront.opentracing.clock;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Clock} whose time is updated by a background thread at a fixed tick, so that reading
+ * the time is a single volatile read. Meant for services that start spans at such a rate that
+ * reading the system time sources shows up in profiles.
+ *
+ * Timestamps and durations have the resolution of the tick: spans that are shorter than a tick
+ * may have a duration of 0. The background thread is stopped by {@link #close()}.
+ */
+public class CoarseClock implements Clock, Closeable {
+
+  private final Clock source;
+  private final ScheduledExecutorService tickService;
+  private volatile long currentTimeMicros;
+  private volatile long nanoTime;
+
+  /**
+   * Constructor.
+   *
+   * @param tickMicros the interval between updates of the time in microseconds
+   */
+  public CoarseClock(long tickMicros) {
+    this(new AnchoredClock(), tickMicros);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param source the clock the time is read from on every tick
+   * @param tickMicros the interval between updates of the time in microseconds
+   */
+  public CoarseClock(Clock source, long tickMicros) {
+    if (tickMicros <= 0) {
+      throw new IllegalArgumentException("invalid tickMicros");
+    }
+    this.source = source;
+    tick();
+    tickService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "wavefrontCoarseClock");
+      thread.setDaemon(true);
+      return thread;
+    });
+    tickService.scheduleAtFixedRate(this::tick, tickMicros, tickMicros, TimeUnit.MICROSECONDS);
+  }
+
+  private void tick() {
+    nanoTime = source.nanoTime();
+    currentTimeMicros = source.currentTimeMicros();
+  }
+
+  @Override
+  public long currentTimeMicros() {
+    return currentTimeMicros;
+  }
+
+  @Override
+  public long nanoTime() {
+    return nanoTime;
+  }
+
+  @Override
+  public void close() {
+    tickService.shutdownNow();
+  }
+}
@@ -0,0 +1,163 @@
+package com.wavefront.opentracing.common;
+
+/**
+ * Conversions between 64-bit id halves and their hexadecimal string forms that work directly on
+ * longs and chars.
+ */
+public final class HexCodec {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private HexCodec() {
+  }
+
+  /**
+   * Formats a 128-bit id as a lowercase UUID string, e.g.
+   * {@code 123e4567-e89b-42d3-a456-556642440000}. Equivalent to {@code new UUID(high, low)
+   * .toString()} without creating the {@link java.util.UUID}.
+   *
+   * @param high the most significant 64 bits
+   * @param low the least significant 64 bits
+   * @return the UUID string
+   */
+  public static String toUuidString(long high, long low) {
+    char[] chars = new char[36];
+    writeHex(high >>> 32, chars, 0, 8);
+    chars[8] = '-';
+    writeHex(high >>> 16, chars, 9, 4);
+    chars[13] = '-';
+    writeHex(high, chars, 14, 4);
+    chars[18] = '-';
+    writeHex(low >>> 48, chars, 19, 4);
+    chars[23] = '-';
+    writeHex(low, chars, 24, 12);
+    return new String(chars);
+  }
+
+  /**
+   * Checks whether the string has the canonical UUID layout of 36 characters with dashes at
+   * positions 8, 13, 18 and 23. Digits are not validated.
+   *
+   * @param s the string to check
+   * @return true if the string has the canonical UUID layout
+   */
+  public static boolean isCanonicalUuidString(String s) {
+    return s.length() == 36 && s.charAt(8) == '-' && s.charAt(13) == '-' &&
+        s.charAt(18) == '-' && s.charAt(23) == '-';
+  }
+
+  /**
+   * Parses the most significant 64 bits of a canonical UUID string.
+   *
+   * @param s a string for which {@link #isCanonicalUuidString} holds
+   * @return the most significant 64 bits
+   * @throws IllegalArgumentException if the string contains invalid hex digits
+   */
+  public static long parseUuidHigh(String s) {
+    long high = parseHexLong(s, 0, 8);
+    high = (high << 16) | parseHexLong(s, 9, 13);
+    return (high << 16) | parseHexLong(s, 14, 18);
+  }
+
+  /**
+   * Parses the least significant 64 bits of a canonical UUID string.
+   *
+   * @param s a string for which {@link #isCanonicalUuidString} holds
+   * @return the least significant 64 bits
+   * @throws IllegalArgumentException if the string contains invalid hex digits
+   */
+  public static long parseUuidLow(String s) {
+    long low = parseHexLong(s, 19, 23);
+    return (low << 48) | parseHexLong(s, 24, 36);
+  }
+
+  /**
+   * Parses the hex digits in {@code s[begin, end)} as an unsigned value. Only the lowest 64 bits
+   * are kept when there are more than 16 digits, as {@code new BigInteger(hex, 16).longValue()}
+   * would.
+   *
+   * @param s the string to parse
+   * @param begin the index of the first digit, inclusive
+   * @param end the index of the last digit, exclusive
+   * @return the lowest 64 bits of the parsed value
+   * @throws NumberFormatException if the range is empty or contains invalid hex digits
+   */
+  public static long parseHexLong(String s, int begin, int end) {
+    if (begin >= end) {
+      throw new NumberFormatException("Empty hex string in: " + s);
+    }
+    long result = 0;
+    for (int i = begin; i < end; i++) {
+      int digit = hexDigit(s.charAt(i));
+      if (digit < 0) {
+        throw new NumberFormatException("Invalid hex digit in: " + s);
+      }
+      result = (result << 4) | digit;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of chars {@link #writeLowerHex} needs for a 128-bit id, i.e. the length
+   * of its unsigned lowercase hex form without leading zeros.
+   *
+   * @param high the most significant 64 bits
+   * @param low the least significant 64 bits
+   * @return the length of the hex form
+   */
+  public static int lowerHexLength(long high, long low) {
+    return high == 0 ? hexLength(low) : hexLength(high) + 16;
+  }
+
+  /**
+   * Writes a 128-bit id as unsigned lowercase hex without leading zeros, e.g. {@code 1f} or
+   * {@code 0} for zero. Equivalent to {@code BigInteger.toString(16)} of the unsigned value.
+   *
+   * @param high the most significant 64 bits
+   * @param low the least significant 64 bits
+   * @param dest the array to write to
+   * @param offset the index to start writing at
+   * @return the index after the last char written
+   */
+  public static int writeLowerHex(long high, long low, char[] dest, int offset) {
+    if (high == 0) {
+      int digits = hexLength(low);
+      writeHex(low, dest, offset, digits);
+      return offset + digits;
+    }
+    int highDigits = hexLength(high);
+    writeHex(high, dest, offset, highDigits);
+    writeHex(low, dest, offset + highDigits, 16);
+    return offset + highDigits + 16;
+  }
+
+  private static int hexLength(long value) {
+    return value == 0 ? 1 : 16 - Long.numberOfLeadingZeros(value) / 4;
+  }
+
+  /**
+   * @return the value of a hex digit, or -1 if the char is not a hex digit
+   */
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * Writes the lowest {@code digits} hex digits of {@code value} into {@code dest}, zero-padded.
+   */
+  private static void writeHex(long value, char[] dest, int offset, int digits) {
+    for (int i = offset + digits - 1; i >= offset; i--) {
+      dest[i] = HEX_DIGITS[(int) (value & 0xf)];
+      value >>>= 4;
+    }
+  }
+}
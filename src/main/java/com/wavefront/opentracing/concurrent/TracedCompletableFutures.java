@@ -0,0 +1,184 @@
+package com.wavefront.opentracing.concurrent;
+
+import com.wavefront.opentracing.WavefrontTracer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+
+/**
+ * Adapters that run the stages of {@link CompletableFuture} chains with the span that was active
+ * when the chain was built, whichever thread completes the previous stage.
+ *
+ * <pre>{@code
+ * TracedCompletableFutures.supplyAsync(tracer, this::fetchOrder, executor).
+ *     thenApplyAsync(TracedCompletableFutures.function(tracer, this::price), executor).
+ *     thenAccept(TracedCompletableFutures.consumer(tracer, this::respond));
+ * }</pre>
+ *
+ * Each adapter captures the active span once, in a single object. Without an active span the
+ * given function is returned unchanged.
+ */
+public final class TracedCompletableFutures {
+
+  private TracedCompletableFutures() {
+  }
+
+  public static <U> CompletableFuture<U> supplyAsync(WavefrontTracer tracer,
+                                                     Supplier<U> supplier) {
+    return supplyAsync(tracer, supplier, ForkJoinPool.commonPool());
+  }
+
+  public static <U> CompletableFuture<U> supplyAsync(WavefrontTracer tracer, Supplier<U> supplier,
+                                                     Executor executor) {
+    return CompletableFuture.supplyAsync(supplier(tracer, supplier), executor);
+  }
+
+  public static CompletableFuture<Void> runAsync(WavefrontTracer tracer, Runnable runnable) {
+    return runAsync(tracer, runnable, ForkJoinPool.commonPool());
+  }
+
+  public static CompletableFuture<Void> runAsync(WavefrontTracer tracer, Runnable runnable,
+                                                 Executor executor) {
+    return CompletableFuture.runAsync(runnable(tracer, runnable), executor);
+  }
+
+  public static <T> Supplier<T> supplier(WavefrontTracer tracer, Supplier<T> supplier) {
+    Span span = tracer.activeSpan();
+    return span == null ? supplier : new TracedSupplier<>(tracer.scopeManager(), span, supplier);
+  }
+
+  public static Runnable runnable(WavefrontTracer tracer, Runnable runnable) {
+    Span span = tracer.activeSpan();
+    return span == null ? runnable :
+        TracedTask.of(tracer, span, runnable, false);
+  }
+
+  public static <T, R> Function<T, R> function(WavefrontTracer tracer, Function<T, R> function) {
+    Span span = tracer.activeSpan();
+    return span == null ? function : new TracedFunction<>(tracer.scopeManager(), span, function);
+  }
+
+  public static <T, U, R> BiFunction<T, U, R> biFunction(WavefrontTracer tracer,
+                                                         BiFunction<T, U, R> function) {
+    Span span = tracer.activeSpan();
+    return span == null ? function :
+        new TracedBiFunction<>(tracer.scopeManager(), span, function);
+  }
+
+  public static <T> Consumer<T> consumer(WavefrontTracer tracer, Consumer<T> consumer) {
+    Span span = tracer.activeSpan();
+    return span == null ? consumer : new TracedConsumer<>(tracer.scopeManager(), span, consumer);
+  }
+
+  public static <T, U> BiConsumer<T, U> biConsumer(WavefrontTracer tracer,
+                                                   BiConsumer<T, U> consumer) {
+    Span span = tracer.activeSpan();
+    return span == null ? consumer :
+        new TracedBiConsumer<>(tracer.scopeManager(), span, consumer);
+  }
+
+  private static final class TracedSupplier<T> implements Supplier<T> {
+    private final ScopeManager scopeManager;
+    private final Span span;
+    private final Supplier<T> delegate;
+
+    TracedSupplier(ScopeManager scopeManager, Span span, Supplier<T> delegate) {
+      this.scopeManager = scopeManager;
+      this.span = span;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public T get() {
+      try (Scope scope = scopeManager.activate(span)) {
+        return delegate.get();
+      }
+    }
+  }
+
+  private static final class TracedFunction<T, R> implements Function<T, R> {
+    private final ScopeManager scopeManager;
+    private final Span span;
+    private final Function<T, R> delegate;
+
+    TracedFunction(ScopeManager scopeManager, Span span, Function<T, R> delegate) {
+      this.scopeManager = scopeManager;
+      this.span = span;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public R apply(T t) {
+      try (Scope scope = scopeManager.activate(span)) {
+        return delegate.apply(t);
+      }
+    }
+  }
+
+  private static final class TracedBiFunction<T, U, R> implements BiFunction<T, U, R> {
+    private final ScopeManager scopeManager;
+    private final Span span;
+    private final BiFunction<T, U, R> delegate;
+
+    TracedBiFunction(ScopeManager scopeManager, Span span, BiFunction<T, U, R> delegate) {
+      this.scopeManager = scopeManager;
+      this.span = span;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public R apply(T t, U u) {
+      try (Scope scope = scopeManager.activate(span)) {
+        return delegate.apply(t, u);
+      }
+    }
+  }
+
+  private static final class TracedConsumer<T> implements Consumer<T> {
+    private final ScopeManager scopeManager;
+    private final Span span;
+    private final Consumer<T> delegate;
+
+    TracedConsumer(ScopeManager scopeManager, Span span, Consumer<T> delegate) {
+      this.scopeManager = scopeManager;
+      this.span = span;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void accept(T t) {
+      try (Scope scope = scopeManager.activate(span)) {
+        delegate.accept(t);
+      }
+    }
+  }
+
+  private static final class TracedBiConsumer<T, U> implements BiConsumer<T, U> {
+    private final ScopeManager scopeManager;
+    private final Span span;
+    private final BiConsumer<T, U> delegate;
+
+    TracedBiConsumer(ScopeManager scopeManager, Span span, BiConsumer<T, U> delegate) {
+      this.scopeManager = scopeManager;
+      this.span = span;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void accept(T t, U u) {
+      try (Scope scope = scopeManager.activate(span)) {
+        delegate.accept(t, u);
+      }
+    }
+  }
+}
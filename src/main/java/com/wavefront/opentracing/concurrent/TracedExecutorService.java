@@ -0,0 +1,152 @@
+package com.wavefront.opentracing.concurrent;
+
+import com.wavefront.opentracing.WavefrontTracer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.opentracing.Span;
+
+/**
+ * An {@link ExecutorService} that runs each task with the span that was active on the submitting
+ * thread, activated through the tracer's {@link io.opentracing.ScopeManager}. Tasks submitted
+ * without an active span are passed on unchanged; other tasks are wrapped in a single object.
+ *
+ * Optionally, the time each task waited in the executor's queue is recorded as a
+ * {@code queue.wait} child span of the active span, lasting from submitting the task until it
+ * starts to run. The active span itself is left unchanged.
+ */
+public class TracedExecutorService implements ExecutorService {
+
+  private final ExecutorService delegate;
+  private final WavefrontTracer tracer;
+  private final boolean recordQueueWait;
+
+  /**
+   * Constructor.
+   *
+   * @param delegate the executor running the tasks
+   * @param tracer the tracer whose active span is propagated to the tasks
+   */
+  public TracedExecutorService(ExecutorService delegate, WavefrontTracer tracer) {
+    this(delegate, tracer, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param delegate the executor running the tasks
+   * @param tracer the tracer whose active span is propagated to the tasks
+   * @param recordQueueWait whether to record the time each task waited to run as a child span
+   */
+  public TracedExecutorService(ExecutorService delegate, WavefrontTracer tracer,
+                               boolean recordQueueWait) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("invalid executor");
+    }
+    if (tracer == null) {
+      throw new IllegalArgumentException("invalid tracer");
+    }
+    this.delegate = delegate;
+    this.tracer = tracer;
+    this.recordQueueWait = recordQueueWait;
+  }
+
+  Runnable wrap(Runnable task, boolean recordQueueWait) {
+    Span span = tracer.activeSpan();
+    return span == null ? task :
+        TracedTask.of(tracer, span, task, recordQueueWait);
+  }
+
+  <T> Callable<T> wrap(Callable<T> task, boolean recordQueueWait) {
+    Span span = tracer.activeSpan();
+    return span == null ? task :
+        TracedTask.of(tracer, span, task, recordQueueWait);
+  }
+
+  private <T> List<Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+    Span span = tracer.activeSpan();
+    List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+    for (Callable<T> task : tasks) {
+      wrapped.add(span == null ? task :
+          TracedTask.of(tracer, span, task, recordQueueWait));
+    }
+    return wrapped;
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    delegate.execute(wrap(command, recordQueueWait));
+  }
+
+  @Override
+  public Future<?> submit(Runnable task) {
+    return delegate.submit(wrap(task, recordQueueWait));
+  }
+
+  @Override
+  public <T> Future<T> submit(Runnable task, T result) {
+    return delegate.submit(wrap(task, recordQueueWait), result);
+  }
+
+  @Override
+  public <T> Future<T> submit(Callable<T> task) {
+    return delegate.submit(wrap(task, recordQueueWait));
+  }
+
+  @Override
+  public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+      throws InterruptedException {
+    return delegate.invokeAll(wrap(tasks));
+  }
+
+  @Override
+  public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout,
+                                       TimeUnit unit) throws InterruptedException {
+    return delegate.invokeAll(wrap(tasks), timeout, unit);
+  }
+
+  @Override
+  public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+      throws InterruptedException, ExecutionException {
+    return delegate.invokeAny(wrap(tasks));
+  }
+
+  @Override
+  public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    return delegate.invokeAny(wrap(tasks), timeout, unit);
+  }
+
+  @Override
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return delegate.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return delegate.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return delegate.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return delegate.awaitTermination(timeout, unit);
+  }
+}
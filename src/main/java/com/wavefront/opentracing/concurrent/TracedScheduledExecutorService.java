@@ -0,0 +1,68 @@
+package com.wavefront.opentracing.concurrent;
+
+import com.wavefront.opentracing.WavefrontTracer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ScheduledExecutorService} that runs each task with the span that was active on the
+ * submitting thread. Periodic tasks run with the same span on every run.
+ *
+ * The queue wait is only recorded for tasks submitted without a delay, since the delay of
+ * scheduled tasks is intended.
+ */
+public class TracedScheduledExecutorService extends TracedExecutorService
+    implements ScheduledExecutorService {
+
+  private final ScheduledExecutorService delegate;
+
+  /**
+   * Constructor.
+   *
+   * @param delegate the executor running the tasks
+   * @param tracer the tracer whose active span is propagated to the tasks
+   */
+  public TracedScheduledExecutorService(ScheduledExecutorService delegate,
+                                        WavefrontTracer tracer) {
+    this(delegate, tracer, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param delegate the executor running the tasks
+   * @param tracer the tracer whose active span is propagated to the tasks
+   * @param recordQueueWait whether to record the time each task submitted without a delay
+   *                        waited to run as a child span
+   */
+  public TracedScheduledExecutorService(ScheduledExecutorService delegate,
+                                        WavefrontTracer tracer, boolean recordQueueWait) {
+    super(delegate, tracer, recordQueueWait);
+    this.delegate = delegate;
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return delegate.schedule(wrap(command, false), delay, unit);
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    return delegate.schedule(wrap(callable, false), delay, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+                                                TimeUnit unit) {
+    return delegate.scheduleAtFixedRate(wrap(command, false), initialDelay, period, unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+                                                   long delay, TimeUnit unit) {
+    return delegate.scheduleWithFixedDelay(wrap(command, false), initialDelay, delay, unit);
+  }
+}
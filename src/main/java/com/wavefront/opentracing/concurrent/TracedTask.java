@@ -0,0 +1,97 @@
+package com.wavefront.opentracing.concurrent;
+
+import com.wavefront.opentracing.WavefrontTracer;
+
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nullable;
+
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+
+/**
+ * A task that runs with the span that was active when the task was submitted. A single instance
+ * wraps either a {@link Runnable} or a {@link Callable}, so wrapping a task is one allocation.
+ *
+ * The queue wait is recorded on a child span of its own rather than on the submitting span, which
+ * may have finished and been reported by the time the task runs. The child span is only created
+ * once the task starts to run, so tasks that are rejected or never run leave no span behind.
+ */
+final class TracedTask<V> implements Runnable, Callable<V> {
+
+  /**
+   * The operation name of the span lasting from submitting a task until starting to run it.
+   */
+  static final String QUEUE_WAIT_OPERATION = "queue.wait";
+
+  private final WavefrontTracer tracer;
+  private final ScopeManager scopeManager;
+  private final Span span;
+  @Nullable
+  private final Runnable runnable;
+  @Nullable
+  private final Callable<V> callable;
+  // the time the task was submitted in microseconds, or 0 once the wait has been recorded or if
+  // it is not recorded
+  private volatile long submitMicros;
+
+  private TracedTask(WavefrontTracer tracer, Span span, @Nullable Runnable runnable,
+                     @Nullable Callable<V> callable, boolean recordQueueWait) {
+    this.tracer = tracer;
+    this.scopeManager = tracer.scopeManager();
+    this.span = span;
+    this.runnable = runnable;
+    this.callable = callable;
+    this.submitMicros = recordQueueWait ? tracer.currentTimeMicros() : 0;
+  }
+
+  static TracedTask<Object> of(WavefrontTracer tracer, Span span, Runnable runnable,
+                               boolean recordQueueWait) {
+    return new TracedTask<>(tracer, span, runnable, null, recordQueueWait);
+  }
+
+  static <V> TracedTask<V> of(WavefrontTracer tracer, Span span, Callable<V> callable,
+                              boolean recordQueueWait) {
+    return new TracedTask<>(tracer, span, null, callable, recordQueueWait);
+  }
+
+  @Override
+  public void run() {
+    recordQueueWait();
+    try (Scope scope = scopeManager.activate(span)) {
+      if (runnable != null) {
+        runnable.run();
+      } else {
+        callable.call();
+      }
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Exception e) {
+      // only thrown by a callable run as a runnable
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public V call() throws Exception {
+    recordQueueWait();
+    try (Scope scope = scopeManager.activate(span)) {
+      if (callable != null) {
+        return callable.call();
+      }
+      runnable.run();
+      return null;
+    }
+  }
+
+  private void recordQueueWait() {
+    long startMicros = submitMicros;
+    if (startMicros != 0) {
+      // only the first run waited in the queue
+      submitMicros = 0;
+      tracer.buildSpan(QUEUE_WAIT_OPERATION).asChildOf(span).withStartTimestamp(startMicros).
+          start().finish(tracer.currentTimeMicros());
+    }
+  }
+}
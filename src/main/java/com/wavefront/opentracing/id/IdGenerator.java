@@ -0,0 +1,38 @@
+package com.wavefront.opentracing.id;
+
+/**
+ * Generates the 128-bit trace and span ids assigned to new spans. Each id is produced as a most
+ * significant (high) and a least significant (low) 64-bit half.
+ *
+ * Implementations are invoked on the thread that starts a span and must be thread-safe.
+ */
+public interface IdGenerator {
+
+  /**
+   * Generates the most significant 64 bits of a new trace id.
+   *
+   * @return the high 64 bits of the trace id
+   */
+  long nextTraceIdHigh();
+
+  /**
+   * Generates the least significant 64 bits of a new trace id.
+   *
+   * @return the low 64 bits of the trace id
+   */
+  long nextTraceIdLow();
+
+  /**
+   * Generates the most significant 64 bits of a new span id.
+   *
+   * @return the high 64 bits of the span id, 0 for 64-bit span ids
+   */
+  long nextSpanIdHigh();
+
+  /**
+   * Generates the least significant 64 bits of a new span id.
+   *
+   * @return the low 64 bits of the span id
+   */
+  long nextSpanIdLow();
+}
@@ -0,0 +1,58 @@
+package com.wavefront.opentracing.id;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The default {@link IdGenerator}, backed by {@link ThreadLocalRandom}. Generating an id neither
+ * allocates nor contends with other threads.
+ *
+ * Ids have the layout of version 4 (random) UUIDs. Optionally span ids can be limited to 64 bits,
+ * in which case the high half of every span id is 0.
+ *
+ * The ids are not cryptographically secure; use {@link SecureIdGenerator} if they must not be
+ * predictable.
+ */
+public class RandomIdGenerator implements IdGenerator {
+
+  private final boolean use64BitSpanIds;
+
+  public RandomIdGenerator() {
+    this(false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param use64BitSpanIds whether to generate 64-bit instead of 128-bit span ids
+   */
+  public RandomIdGenerator(boolean use64BitSpanIds) {
+    this.use64BitSpanIds = use64BitSpanIds;
+  }
+
+  @Override
+  public long nextTraceIdHigh() {
+    return RandomIds.toVersion4High(ThreadLocalRandom.current().nextLong());
+  }
+
+  @Override
+  public long nextTraceIdLow() {
+    return RandomIds.toVersion4Low(ThreadLocalRandom.current().nextLong());
+  }
+
+  @Override
+  public long nextSpanIdHigh() {
+    return use64BitSpanIds ? 0L : RandomIds.toVersion4High(ThreadLocalRandom.current().nextLong());
+  }
+
+  @Override
+  public long nextSpanIdLow() {
+    if (use64BitSpanIds) {
+      long id;
+      do {
+        id = ThreadLocalRandom.current().nextLong();
+      } while (id == 0L);
+      return id;
+    }
+    return RandomIds.toVersion4Low(ThreadLocalRandom.current().nextLong());
+  }
+}
@@ -0,0 +1,25 @@
+package com.wavefront.opentracing.id;
+
+/**
+ * Helpers for laying out random bits as version 4 UUIDs, as done by
+ * {@link java.util.UUID#randomUUID()}.
+ */
+final class RandomIds {
+
+  private RandomIds() {
+  }
+
+  /**
+   * Sets the version bits (version 4) of the most significant half of a UUID.
+   */
+  static long toVersion4High(long random) {
+    return (random & 0xffffffffffff0fffL) | 0x0000000000004000L;
+  }
+
+  /**
+   * Sets the variant bits (IETF) of the least significant half of a UUID.
+   */
+  static long toVersion4Low(long random) {
+    return (random & 0x3fffffffffffffffL) | 0x8000000000000000L;
+  }
+}
@@ -0,0 +1,36 @@
+package com.wavefront.opentracing.id;
+
+import java.security.SecureRandom;
+
+/**
+ * {@link IdGenerator} backed by a shared {@link SecureRandom}, equivalent to generating ids with
+ * {@link java.util.UUID#randomUUID()}.
+ *
+ * Use it when ids must not be predictable. Note that all threads share the same
+ * {@link SecureRandom}, which becomes a point of contention when many threads start spans at
+ * once.
+ */
+public class SecureIdGenerator implements IdGenerator {
+
+  private final SecureRandom random = new SecureRandom();
+
+  @Override
+  public long nextTraceIdHigh() {
+    return RandomIds.toVersion4High(random.nextLong());
+  }
+
+  @Override
+  public long nextTraceIdLow() {
+    return RandomIds.toVersion4Low(random.nextLong());
+  }
+
+  @Override
+  public long nextSpanIdHigh() {
+    return RandomIds.toVersion4High(random.nextLong());
+  }
+
+  @Override
+  public long nextSpanIdLow() {
+    return RandomIds.toVersion4Low(random.nextLong());
+  }
+}
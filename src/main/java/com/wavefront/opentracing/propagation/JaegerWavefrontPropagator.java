@@ -1,12 +1,10 @@
 package com.wavefront.opentracing.propagation;
 
 import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.opentracing.common.HexCodec;
 
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 import javax.annotation.Nullable;
 
@@ -54,33 +52,49 @@ public class JaegerWavefrontPropagator implements Propagator<TextMap> {
   @Nullable
   @Override
   public WavefrontSpanContext extract(TextMap carrier) {
-    UUID traceId = null;
-    UUID spanId = null;
+    long traceIdHigh = 0;
+    long traceIdLow = 0;
+    long spanIdLow = 0;
+    boolean hasTraceContext = false;
     String parentId = null;
     Boolean samplingDecision = null;
     Map<String, String> baggage = new HashMap<>();
 
     for (Map.Entry<String, String> entry : carrier) {
-      String k = entry.getKey().toLowerCase();
-      if (k.equals(traceIdHeader)) {
-        String[] traceData = contextFromTraceIdHeader(entry.getValue());
-        if (traceData == null) {
+      String k = entry.getKey();
+      if (k.equalsIgnoreCase(traceIdHeader)) {
+        String value = entry.getValue();
+        if (value == null) {
           continue;
         }
-        traceId = traceIdToUuid(traceData[0]);
-        spanId = spanIdToUuid(traceData[1]);
-        parentId = traceData[2];
-        samplingDecision = traceData[3].equals("1");
-      } else if (k.startsWith(baggagePrefix)) {
-        baggage.put(strippedPrefix(entry.getKey()), entry.getValue());
+        // single pass over traceId:spanId:parentId:samplingDecision
+        int first = value.indexOf(':');
+        int second = first < 0 ? -1 : value.indexOf(':', first + 1);
+        int third = second < 0 ? -1 : value.indexOf(':', second + 1);
+        if (first <= 0 || third < 0 || third == value.length() - 1 ||
+            value.indexOf(':', third + 1) >= 0) {
+          continue;
+        }
+        // the trace id keeps its low 64 bits and the preceding 64 bits, if any
+        int lowBegin = Math.max(0, first - 16);
+        traceIdLow = HexCodec.parseHexLong(value, lowBegin, first);
+        traceIdHigh = lowBegin == 0 ? 0 : HexCodec.parseHexLong(value, 0, lowBegin);
+        // the span id keeps its low 64 bits, consistent with the Jaeger client
+        spanIdLow = HexCodec.parseHexLong(value, first + 1, second);
+        parentId = value.substring(second + 1, third);
+        samplingDecision = value.length() == third + 2 && value.charAt(third + 1) == '1';
+        hasTraceContext = true;
+      } else if (k.regionMatches(true, 0, baggagePrefix, 0, baggagePrefix.length())) {
+        baggage.put(strippedPrefix(k), entry.getValue());
       }
     }
 
-    if (traceId == null || spanId == null) {
+    if (!hasTraceContext) {
       return null;
     }
     baggage.put(PARENT_ID_KEY, parentId);
-    return new WavefrontSpanContext(traceId, spanId, baggage, samplingDecision);
+    return new WavefrontSpanContext(traceIdHigh, traceIdLow, 0, spanIdLow, baggage,
+        samplingDecision);
   }
 
   @Override
@@ -94,28 +108,6 @@ public class JaegerWavefrontPropagator implements Propagator<TextMap> {
     }
   }
 
-  /**
-   * Extracts traceId, spanId, parentId and samplingDecision from the 'uber-trace-id' HTTP header
-   * value that's in the format traceId:spanId:parentId:samplingDecision.
-   *
-   * @param value 'uber-trace-id' header value
-   * @return extracted string array with ids
-   */
-  @Nullable
-  private String[] contextFromTraceIdHeader(String value) {
-    if (value == null || value.equals("")) {
-      return null;
-    }
-    String[] toks = value.split(":");
-    if (toks.length != 4) {
-      return null;
-    }
-    if (toks[0] == null || toks[0].length() == 0) {
-      return null;
-    }
-    return toks;
-  }
-
   /**
    * Extracts traceId and spanId from a WavefrontSpanContext and constructs a Jaeger client
    * compatible header of the form traceId:spanId:parentId:samplingDecision.
@@ -124,84 +116,30 @@ public class JaegerWavefrontPropagator implements Propagator<TextMap> {
    * @return formatted header as string
    */
   private String contextToTraceIdHeader(WavefrontSpanContext context) {
-    BigInteger traceId = uuidToBigInteger(context.getTraceId());
-    BigInteger spanId = uuidToBigInteger(context.getSpanId());
-    Boolean samplingDecision = context.getSamplingDecision();
-    String parentId = context.getBaggageItem(PARENT_ID_KEY);
-    if (samplingDecision == null) {
-      samplingDecision = false;
-    }
-
-    StringBuilder outCtx = new StringBuilder();
-    outCtx.append(traceId.toString(16)).append(":").
-        append(spanId.toString(16)).append(":").
-        append(parentId).append(":").
-        append(samplingDecision ? "1" : "0");
-    return outCtx.toString();
+    long traceIdHigh = context.getTraceIdHigh();
+    long traceIdLow = context.getTraceIdLow();
+    long spanIdHigh = context.getSpanIdHigh();
+    long spanIdLow = context.getSpanIdLow();
+    String parentId = String.valueOf(context.getBaggageItem(PARENT_ID_KEY));
+    boolean samplingDecision = Boolean.TRUE.equals(context.getSamplingDecision());
+
+    char[] chars = new char[HexCodec.lowerHexLength(traceIdHigh, traceIdLow) +
+        HexCodec.lowerHexLength(spanIdHigh, spanIdLow) + parentId.length() + 4];
+    int pos = HexCodec.writeLowerHex(traceIdHigh, traceIdLow, chars, 0);
+    chars[pos++] = ':';
+    pos = HexCodec.writeLowerHex(spanIdHigh, spanIdLow, chars, pos);
+    chars[pos++] = ':';
+    parentId.getChars(0, parentId.length(), chars, pos);
+    pos += parentId.length();
+    chars[pos++] = ':';
+    chars[pos] = samplingDecision ? '1' : '0';
+    return new String(chars);
   }
 
   private String strippedPrefix(String val) {
     return val.substring(baggagePrefix.length());
   }
 
-  /**
-   * Parses a UUID and converts to BigInteger.
-   *
-   * @param id UUID of the traceId or spanId
-   * @return BigInteger for UUID.
-   */
-  private BigInteger uuidToBigInteger(UUID id) {
-    ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
-    bb.putLong(id.getMostSignificantBits());
-    bb.putLong(id.getLeastSignificantBits());
-    return new BigInteger(1, bb.array());
-  }
-
-  /**
-   * Parses a full (low + high) traceId, trimming the lower 64 bits.
-   * Inspired by {@code io.jaegertracing.internal.propagation}
-   *
-   * @param hexString a full traceId
-   * @return the long value of the higher 64 bits for a 128 bit traceId or 0 for 64 bit traceIds
-   */
-  private static long high(String hexString) {
-    if (hexString.length() <= 16) {
-      return 0L;
-    }
-    int highLength = hexString.length() - 16;
-    String highString = hexString.substring(0, highLength);
-    return new BigInteger(highString, 16).longValue();
-  }
-
-  /**
-   * Constructs a UUID for the spanId represented as hexString.
-   *
-   * UUID is constructed with the long value of the lower 64 bits of the spanId to be consistent
-   * with Jaeger client's approach.
-   *
-   * @param id spanId as hexString
-   * @return UUID of the spanId as expected by WavefrontSpanContext
-   */
-  private UUID spanIdToUuid(String id) {
-    long num = new BigInteger(id, 16).longValue();
-    return new UUID(0, num);
-  }
-
-  /**
-   * Constructs UUID for traceId represented as hexString consisting  of (low + high) 64 bits.
-   *
-   * UUID is generated with long value of  high 64 bits(if any) and long value of low 64 bits and is
-   * consistent with the Wavefront approach.
-   *
-   * @param id hexString form of traceId
-   * @return UUID for traceId as expected by WavefrontSpanContext
-   */
-  private UUID traceIdToUuid(String id) {
-    long traceIdLow = new BigInteger(id, 16).longValue();
-    long traceIdHigh = high(id);
-    return new UUID(traceIdHigh, traceIdLow);
-  }
-
   /**
    * Gets a new {@link JaegerWavefrontPropagator.Builder} instance.
    *
@@ -1,6 +1,7 @@
 package com.wavefront.opentracing.propagation;
 
 import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.opentracing.common.HexCodec;
 
 import java.util.HashMap;
 import java.util.Locale;
@@ -14,6 +15,9 @@ import io.opentracing.propagation.TextMap;
 /**
  * Propagate contexts within TextMaps.
  *
+ * Carrier keys are matched case-insensitively without being copied, and keys that cannot start
+ * with the {@code wf-ot-} prefix are rejected on their first character.
+ *
  * @author Vikram Raman (vikram@wavefront.com)
  */
 public class TextMapPropagator implements Propagator<TextMap> {
@@ -25,8 +29,8 @@ public class TextMapPropagator implements Propagator<TextMap> {
 
   @Override
   public void inject(WavefrontSpanContext spanContext, TextMap carrier) {
-    carrier.put(TRACE_ID, spanContext.getTraceId().toString());
-    carrier.put(SPAN_ID, spanContext.getSpanId().toString());
+    carrier.put(TRACE_ID, spanContext.toTraceId());
+    carrier.put(SPAN_ID, spanContext.toSpanId());
     for (Map.Entry<String, String> entry : spanContext.baggageItems()) {
       carrier.put(BAGGAGE_PREFIX + entry.getKey(), entry.getValue());
     }
@@ -39,22 +43,24 @@ public class TextMapPropagator implements Propagator<TextMap> {
   @Override
   public WavefrontSpanContext extract(TextMap carrier) {
 
-    UUID traceId = null;
-    UUID spanId = null;
+    String traceId = null;
+    String spanId = null;
     Map<String, String> baggage = null;
     Boolean sampling = null;
 
     for (Map.Entry<String, String> entry : carrier) {
-      //TODO: verify locale
-      String key = entry.getKey().toLowerCase(Locale.ROOT);
+      String key = entry.getKey();
+      if (!hasBaggagePrefix(key)) {
+        continue;
+      }
 
-      if (TRACE_ID.equals(key)) {
-        traceId = UUID.fromString(entry.getValue());
-      } else if (SPAN_ID.equals(key)) {
-        spanId = UUID.fromString(entry.getValue());
-      } else if (SAMPLE.equals(key)) {
+      if (matchesIgnoreCase(key, TRACE_ID)) {
+        traceId = entry.getValue();
+      } else if (matchesIgnoreCase(key, SPAN_ID)) {
+        spanId = entry.getValue();
+      } else if (matchesIgnoreCase(key, SAMPLE)) {
         sampling = Boolean.valueOf(entry.getValue());
-      } else if (key.startsWith(BAGGAGE_PREFIX)) {
+      } else {
         if (baggage == null) {
           baggage = new HashMap<>();
         }
@@ -65,10 +71,39 @@ public class TextMapPropagator implements Propagator<TextMap> {
     if (traceId == null || spanId == null) {
       return null;
     }
-    return new WavefrontSpanContext(traceId, spanId, baggage, sampling);
+    if (HexCodec.isCanonicalUuidString(traceId) && HexCodec.isCanonicalUuidString(spanId)) {
+      return new WavefrontSpanContext(HexCodec.parseUuidHigh(traceId),
+          HexCodec.parseUuidLow(traceId), HexCodec.parseUuidHigh(spanId),
+          HexCodec.parseUuidLow(spanId), baggage, sampling);
+    }
+    // non-canonical forms accepted by UUID.fromString
+    return new WavefrontSpanContext(UUID.fromString(traceId), UUID.fromString(spanId), baggage,
+        sampling);
+  }
+
+  /**
+   * Checks case-insensitively whether the key starts with the baggage prefix, rejecting most keys
+   * on their first character.
+   */
+  private static boolean hasBaggagePrefix(String key) {
+    if (key.length() < BAGGAGE_PREFIX.length()) {
+      return false;
+    }
+    char first = key.charAt(0);
+    return (first == 'w' || first == 'W') &&
+        key.regionMatches(true, 1, BAGGAGE_PREFIX, 1, BAGGAGE_PREFIX.length() - 1);
+  }
+
+  /**
+   * Checks case-insensitively whether a key known to start with the baggage prefix equals the
+   * given lowercase key.
+   */
+  private static boolean matchesIgnoreCase(String key, String expected) {
+    return key.length() == expected.length() && key.regionMatches(true, BAGGAGE_PREFIX.length(),
+        expected, BAGGAGE_PREFIX.length(), expected.length() - BAGGAGE_PREFIX.length());
   }
 
   private static String stripPrefix(String key) {
-    return key.substring(BAGGAGE_PREFIX.length());
+    return key.substring(BAGGAGE_PREFIX.length()).toLowerCase(Locale.ROOT);
   }
 }
@@ -0,0 +1,38 @@
+package com.wavefront.opentracing.reporting;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bounded in-memory buffer between threads reporting spans and the threads sending them, or
+ * between threads finishing spans and the threads processing them.
+ */
+public interface BoundedQueue<E> {
+
+  /**
+   * Inserts the element if the queue is not full, without waiting.
+   *
+   * @return true if the element was added, false if the queue is full
+   */
+  boolean offer(E e);
+
+  /**
+   * Removes the head of the queue, waiting up to the given time for an element to be available.
+   *
+   * @return the head of the queue, or null if the timeout elapsed
+   */
+  E poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+  /**
+   * Removes up to maxElements available elements without waiting and adds them to the collection.
+   *
+   * @return the number of elements transferred
+   */
+  int drainTo(Collection<? super E> c, int maxElements);
+
+  int size();
+
+  int remainingCapacity();
+
+  boolean isEmpty();
+}
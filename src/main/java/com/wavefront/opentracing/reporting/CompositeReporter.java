@@ -1,25 +1,68 @@
 package com.wavefront.opentracing.reporting;
 
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
 import com.wavefront.opentracing.WavefrontSpan;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
 
 /**
  * Reporter that delegates to multiple other reporters for reporting.
  * Useful for debugging by reporting spans to console and to backend reporters.
  *
+ * By default spans are handed to the reporters in turn on the thread that reports them. In
+ * asynchronous mode, each reporter gets its own bounded queue and worker thread instead, so that
+ * a slow or failing reporter neither blocks the reporting thread nor the other reporters. Spans
+ * that arrive while the queue of a reporter is full are dropped for that reporter only.
+ *
  * @author Vikram Raman (vikram@wavefront.com)
  */
 public class CompositeReporter implements Reporter {
+  private static final Logger logger = Logger.getLogger(CompositeReporter.class.getName());
+
+  // how long an idle worker waits for spans before re-checking whether to stop
+  private static final long POLL_TIMEOUT_MILLIS = 200;
 
   private final List<Reporter> reporters = new ArrayList<>();
+  // one per reporter in asynchronous mode, otherwise null
+  @Nullable
+  private final List<Sink> sinks;
 
   public CompositeReporter(Reporter... reporters) {
     for (Reporter reporter : reporters) {
       this.reporters.add(reporter);
     }
+    this.sinks = null;
+  }
+
+  /**
+   * Creates a composite reporter that reports to each reporter asynchronously.
+   *
+   * @param maxQueueSize Max number of spans waiting to be reported to each reporter
+   * @param reporters    The reporters to report to
+   * @throws IllegalArgumentException if the queue size is not greater than 0
+   */
+  public CompositeReporter(int maxQueueSize, Reporter... reporters) {
+    if (maxQueueSize <= 0) {
+      throw new IllegalArgumentException("invalid queue size");
+    }
+    this.sinks = new ArrayList<>(reporters.length);
+    for (int i = 0; i < reporters.length; i++) {
+      this.reporters.add(reporters[i]);
+      this.sinks.add(new Sink(reporters[i], maxQueueSize, "wavefrontCompositeReporter-" + i));
+    }
   }
 
   public List<Reporter> getReporters() {
@@ -27,8 +70,38 @@ public class CompositeReporter implements Reporter {
     return new ArrayList<>(reporters);
   }
 
+  /**
+   * Registers the queue size, dropped spans and errors of each reporter as gauges in
+   * asynchronous mode.
+   *
+   * @param metricsReporter the reporter for the internal metrics
+   */
+  public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    if (sinks == null) {
+      return;
+    }
+    for (int i = 0; i < sinks.size(); i++) {
+      Sink sink = sinks.get(i);
+      Map<String, String> tags = new HashMap<>();
+      tags.put("reporter", sink.reporter.getClass().getSimpleName());
+      tags.put("position", String.valueOf(i));
+      metricsReporter.newGauge(new MetricName("reporter.composite.queue.size", tags),
+          () -> (() -> (double) sink.queue.size()));
+      metricsReporter.newGauge(new MetricName("reporter.composite.spans.dropped", tags),
+          () -> (() -> (double) sink.spansDropped.sum()));
+      metricsReporter.newGauge(new MetricName("reporter.composite.errors", tags),
+          () -> (() -> (double) sink.errors.sum()));
+    }
+  }
+
   @Override
   public void report(WavefrontSpan span) throws IOException {
+    if (sinks != null) {
+      for (Sink sink : sinks) {
+        sink.offer(span);
+      }
+      return;
+    }
     for (Reporter reporter : reporters) {
       reporter.report(span);
     }
@@ -37,16 +110,129 @@ public class CompositeReporter implements Reporter {
   @Override
   public int getFailureCount() {
     int result = 0;
-    for (Reporter reporter : reporters) {
-      result += reporter.getFailureCount();
+    for (int failures : getFailureCounts()) {
+      result += failures;
     }
     return result;
   }
 
+  /**
+   * Gets the failure count of each reporter, in the order of {@link #getReporters()}. In
+   * asynchronous mode, the count of a reporter includes the spans dropped for it and the errors
+   * it threw.
+   *
+   * @return the failure count per reporter
+   */
+  public List<Integer> getFailureCounts() {
+    List<Integer> failures = new ArrayList<>(reporters.size());
+    for (int i = 0; i < reporters.size(); i++) {
+      failures.add(sinks == null ? reporters.get(i).getFailureCount() :
+          sinks.get(i).getFailureCount());
+    }
+    return failures;
+  }
+
+  /**
+   * Closes the reporters. In asynchronous mode, each worker reports the spans still queued and
+   * then closes its reporter, so that a reporter is never closed while it is reporting. Workers
+   * that have not finished after 5 seconds are interrupted, drop their remaining spans and close
+   * their reporter once the span they are reporting returns.
+   */
   @Override
   public void close() throws IOException {
-    for (Reporter reporter : reporters) {
-      reporter.close();
+    if (sinks == null) {
+      for (Reporter reporter : reporters) {
+        reporter.close();
+      }
+      return;
+    }
+    for (Sink sink : sinks) {
+      sink.stop = true;
+    }
+    try {
+      // wait for 5 secs max
+      long deadline = System.currentTimeMillis() + 5000;
+      for (Sink sink : sinks) {
+        sink.worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    for (Sink sink : sinks) {
+      if (sink.worker.isAlive()) {
+        sink.abandon();
+      }
+    }
+  }
+
+  /**
+   * The queue and worker thread of one reporter in asynchronous mode.
+   */
+  private static final class Sink implements Runnable {
+    private final Reporter reporter;
+    private final BlockingQueue<WavefrontSpan> queue;
+    private final Thread worker;
+    private final LongAdder spansDropped = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean stop = false;
+    // set when the worker is to drop the queued spans instead of reporting them
+    private volatile boolean abandoned = false;
+
+    Sink(Reporter reporter, int maxQueueSize, String threadName) {
+      this.reporter = reporter;
+      this.queue = new ArrayBlockingQueue<>(maxQueueSize);
+      this.worker = new Thread(this, threadName);
+      worker.setDaemon(true);
+      worker.start();
+    }
+
+    void offer(WavefrontSpan span) {
+      if (stop || !queue.offer(span)) {
+        spansDropped.increment();
+      }
+    }
+
+    void abandon() {
+      abandoned = true;
+      worker.interrupt();
+    }
+
+    int getFailureCount() {
+      return (int) (reporter.getFailureCount() + spansDropped.sum() + errors.sum());
+    }
+
+    @Override
+    public void run() {
+      while (!abandoned && (!stop || !queue.isEmpty())) {
+        try {
+          WavefrontSpan span = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+          if (span != null) {
+            reporter.report(span);
+          }
+        } catch (InterruptedException ex) {
+          if (logger.isLoggable(Level.INFO)) {
+            logger.info("composite reporter thread interrupted");
+          }
+        } catch (Throwable ex) {
+          errors.increment();
+          // warn about the first error only, a failing reporter would otherwise flood the log
+          Level level = errors.sum() == 1 ? Level.WARNING : Level.FINE;
+          if (logger.isLoggable(level)) {
+            logger.log(level, "Error reporting span to " + reporter, ex);
+          }
+        }
+      }
+      if (abandoned) {
+        spansDropped.add(queue.size());
+        queue.clear();
+      }
+      try {
+        reporter.close();
+      } catch (Throwable ex) {
+        if (logger.isLoggable(Level.WARNING)) {
+          logger.log(Level.WARNING, "Error closing " + reporter, ex);
+        }
+      }
     }
   }
 }
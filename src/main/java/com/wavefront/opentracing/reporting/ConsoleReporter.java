@@ -40,7 +40,8 @@ public class ConsoleReporter implements Reporter {
 
     String spanLine = Utils.tracingSpanToLineData(span.getOperationName(),
         span.getStartTimeMicros(), span.getDurationMicroseconds(), source, ctx.getTraceId(),
-        ctx.getSpanId(), parents, follows, span.getTagsAsList(), null, "unknown");
+        ctx.getSpanId(), parents, follows, span.getTagsAsList(), span.getSpanLogs(),
+        "unknown");
     System.out.println("Finished span: sampling=" + ctx.getSamplingDecision() + " " + spanLine);
   }
 
@@ -0,0 +1,401 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Counter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * An append-only overflow buffer for spans that don't fit into the in-memory buffer of a
+ * {@link WavefrontSpanReporter}, backed by memory-mapped segment files on local disk.
+ *
+ * Spans are appended to the newest segment and read back from the oldest one. A segment is
+ * deleted once it has been read completely. Appending never touches the file system: when the
+ * newest segment is full, appending switches to a spare segment that {@link #maintain()} created
+ * ahead of time on a background thread. Records that arrive before the next spare is ready are
+ * rejected. To make room for the spare within the byte cap, the oldest segment is evicted along
+ * with the spans it still holds.
+ *
+ * Each segment starts with a header holding a magic number and the read position, which is
+ * updated as records are read, so that segments left behind by a previous process are replayed
+ * from where reading stopped. Each record is its length followed by a {@link SpilledSpan}. The
+ * length is written after the record, so a zero length marks the end of the written records.
+ * A record that cannot be decoded causes the rest of its segment to be skipped.
+ */
+@ThreadSafe
+final class DiskSpillBuffer {
+  private static final Logger logger = Logger.getLogger(DiskSpillBuffer.class.getName());
+
+  static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  private static final int MAGIC = 0x57465350;
+  private static final int HEADER_SIZE = 8;
+  private static final int READ_POSITION_OFFSET = 4;
+  private static final String SEGMENT_PREFIX = "spans-";
+  private static final String SEGMENT_SUFFIX = ".spill";
+
+  private final File directory;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  // the segment to switch to once the newest one is full
+  @Nullable
+  private Segment spare;
+  private long nextSequence = 0;
+  private long pendingSpans = 0;
+  private boolean maintaining = false;
+  private boolean closed = false;
+
+  @Nullable
+  private Counter segmentsWritten;
+  @Nullable
+  private Counter segmentsReplayed;
+  @Nullable
+  private Counter segmentsEvicted;
+  @Nullable
+  private Counter spansEvicted;
+  @Nullable
+  private Counter spansCorrupt;
+
+  /**
+   * Opens the buffer, picking up any segments that were left in the directory.
+   *
+   * @param directory the directory for the segment files, created if needed
+   * @param maxBytes the max total size of the segment files
+   * @param segmentSize the size of each segment file, capped at half of maxBytes
+   * @throws IOException if the directory or existing segments cannot be opened
+   */
+  DiskSpillBuffer(File directory, long maxBytes, int segmentSize) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("cannot create spill directory " + directory);
+    }
+    this.directory = directory;
+    // at least two segments, the newest one and the spare
+    this.segmentSize = (int) Math.max(HEADER_SIZE + 4, Math.min(segmentSize, maxBytes / 2));
+    this.maxSegments = (int) Math.max(2, maxBytes / this.segmentSize);
+
+    File[] files = directory.listFiles((dir, name) ->
+        name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+    if (files != null) {
+      // zero-padded sequence numbers sort by name
+      Arrays.sort(files);
+      for (File file : files) {
+        Segment segment = Segment.open(file);
+        if (segment == null) {
+          logger.warning("Deleting unreadable spill segment " + file);
+          delete(file);
+          continue;
+        }
+        segments.addLast(segment);
+        pendingSpans += segment.pendingRecords;
+        nextSequence = Math.max(nextSequence, segment.sequence + 1);
+      }
+    }
+    maintain();
+  }
+
+  void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
+    segmentsWritten = metricsReporter.newCounter(new MetricName(
+        "reporter.spill.segments.written", Collections.emptyMap()));
+    segmentsReplayed = metricsReporter.newCounter(new MetricName(
+        "reporter.spill.segments.replayed", Collections.emptyMap()));
+    segmentsEvicted = metricsReporter.newCounter(new MetricName(
+        "reporter.spill.segments.evicted", Collections.emptyMap()));
+    spansEvicted = metricsReporter.newCounter(new MetricName(
+        "reporter.spill.spans.evicted", Collections.emptyMap()));
+    spansCorrupt = metricsReporter.newCounter(new MetricName(
+        "reporter.spill.spans.corrupt", Collections.emptyMap()));
+  }
+
+  /**
+   * Appends a record, switching to the spare segment if the newest one is full.
+   *
+   * @param record the encoded span
+   * @return false if the record is larger than a segment, or if the newest segment is full and
+   * the spare is not ready yet
+   */
+  synchronized boolean append(byte[] record) {
+    if (closed || HEADER_SIZE + 4 + record.length > segmentSize) {
+      return false;
+    }
+    Segment segment = segments.peekLast();
+    if (segment == null || segment.remaining() < 4 + record.length) {
+      if (spare == null) {
+        return false;
+      }
+      segment = spare;
+      spare = null;
+      segments.addLast(segment);
+    }
+    segment.write(record);
+    pendingSpans++;
+    return true;
+  }
+
+  /**
+   * Reads the oldest record, deleting segments that have been read completely.
+   *
+   * @return the oldest span, or null if the buffer is empty
+   */
+  @Nullable
+  synchronized SpilledSpan poll() {
+    Segment segment;
+    while (!closed && (segment = segments.peekFirst()) != null) {
+      if (segment.pendingRecords > 0) {
+        try {
+          SpilledSpan span = segment.read();
+          pendingSpans--;
+          return span;
+        } catch (IOException e) {
+          logger.log(Level.WARNING, "Skipping corrupt records in spill segment " + segment.file, e);
+          // the record that failed to decode has been read already
+          int skipped = 1 + segment.skip();
+          pendingSpans -= skipped;
+          if (spansCorrupt != null) {
+            spansCorrupt.inc(skipped);
+          }
+          continue;
+        }
+      }
+      if (segment == segments.peekLast()) {
+        // keep writing into the newest segment
+        return null;
+      }
+      segments.removeFirst();
+      delete(segment.file);
+      if (segmentsReplayed != null) {
+        segmentsReplayed.inc();
+      }
+    }
+    return null;
+  }
+
+  synchronized long size() {
+    return pendingSpans;
+  }
+
+  synchronized boolean isEmpty() {
+    return pendingSpans == 0;
+  }
+
+  /**
+   * Creates the spare segment if it has been used up, evicting the oldest segments to stay
+   * within the byte cap. Called periodically by the sending threads of the reporter, so that
+   * files are created and deleted off the threads that append spans.
+   */
+  void maintain() {
+    List<Segment> evicted = new ArrayList<>();
+    long sequence;
+    synchronized (this) {
+      if (closed || maintaining || spare != null) {
+        return;
+      }
+      maintaining = true;
+      // the spare counts towards the cap
+      while (segments.size() >= maxSegments) {
+        Segment segment = segments.removeFirst();
+        pendingSpans -= segment.pendingRecords;
+        evicted.add(segment);
+      }
+      sequence = nextSequence++;
+    }
+    Segment created = null;
+    try {
+      for (Segment segment : evicted) {
+        delete(segment.file);
+        if (segmentsEvicted != null) {
+          segmentsEvicted.inc();
+          spansEvicted.inc(segment.pendingRecords);
+        }
+      }
+      File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, sequence,
+          SEGMENT_SUFFIX));
+      try {
+        created = Segment.create(file, sequence, segmentSize);
+        if (segmentsWritten != null) {
+          segmentsWritten.inc();
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Error creating spill segment", e);
+      }
+    } finally {
+      synchronized (this) {
+        maintaining = false;
+        if (closed && created != null) {
+          delete(created.file);
+        } else {
+          spare = created;
+        }
+      }
+    }
+  }
+
+  /**
+   * Flushes the segments to disk and releases them, after which no more records are appended or
+   * read. Unread records are replayed by the next buffer that is opened on the same directory.
+   * The memory mappings are released once the segments are garbage collected.
+   */
+  synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (Segment segment : segments) {
+      segment.buffer.force();
+    }
+    segments.clear();
+    pendingSpans = 0;
+    if (spare != null) {
+      // holds no records
+      delete(spare.file);
+      spare = null;
+    }
+  }
+
+  private static void delete(File file) {
+    // the mapping of a deleted file stays valid until it is garbage collected
+    if (!file.delete() && file.exists()) {
+      logger.warning("Unable to delete spill segment " + file);
+    }
+  }
+
+  private static final class Segment {
+    private final File file;
+    private final long sequence;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int readPosition;
+    private int pendingRecords;
+
+    private Segment(File file, long sequence, MappedByteBuffer buffer, int writePosition,
+                    int readPosition, int pendingRecords) {
+      this.file = file;
+      this.sequence = sequence;
+      this.buffer = buffer;
+      this.writePosition = writePosition;
+      this.readPosition = readPosition;
+      this.pendingRecords = pendingRecords;
+    }
+
+    static Segment create(File file, long sequence, int size) throws IOException {
+      MappedByteBuffer buffer = map(file, size);
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(READ_POSITION_OFFSET, HEADER_SIZE);
+      return new Segment(file, sequence, buffer, HEADER_SIZE, HEADER_SIZE, 0);
+    }
+
+    /**
+     * Opens an existing segment, scanning it for the written records.
+     *
+     * @return the segment, or null if the file is not a valid segment
+     */
+    @Nullable
+    static Segment open(File file) throws IOException {
+      String name = file.getName();
+      long sequence;
+      try {
+        sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+            name.length() - SEGMENT_SUFFIX.length()));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      long size = file.length();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      MappedByteBuffer buffer = map(file, (int) size);
+      if (buffer.getInt(0) != MAGIC) {
+        return null;
+      }
+      int storedReadPosition = buffer.getInt(READ_POSITION_OFFSET);
+      int position = HEADER_SIZE;
+      int readPosition = -1;
+      int pendingRecords = 0;
+      while (position + 4 <= size) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > size - position - 4) {
+          break;
+        }
+        if (position >= storedReadPosition) {
+          // resume reading at a record boundary, even if the stored position is off
+          if (readPosition < 0) {
+            readPosition = position;
+          }
+          pendingRecords++;
+        }
+        position += 4 + length;
+      }
+      return new Segment(file, sequence, buffer, position,
+          readPosition < 0 ? position : readPosition, pendingRecords);
+    }
+
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(size);
+        // the mapping remains valid after the channel is closed
+        return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    }
+
+    int remaining() {
+      return buffer.capacity() - writePosition;
+    }
+
+    void write(byte[] record) {
+      buffer.position(writePosition + 4);
+      buffer.put(record);
+      // publish the record by writing its length last
+      buffer.putInt(writePosition, record.length);
+      writePosition += 4 + record.length;
+      pendingRecords++;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @throws IOException if the record cannot be decoded
+     */
+    SpilledSpan read() throws IOException {
+      int length = buffer.getInt(readPosition);
+      buffer.limit(readPosition + 4 + length);
+      buffer.position(readPosition + 4);
+      try {
+        return SpilledSpan.decode(buffer);
+      } finally {
+        buffer.limit(buffer.capacity());
+        readPosition += 4 + length;
+        pendingRecords--;
+        buffer.putInt(READ_POSITION_OFFSET, readPosition);
+      }
+    }
+
+    /**
+     * Skips the remaining records.
+     *
+     * @return the number of records skipped
+     */
+    int skip() {
+      int skipped = pendingRecords;
+      readPosition = writePosition;
+      pendingRecords = 0;
+      buffer.putInt(READ_POSITION_OFFSET, readPosition);
+      return skipped;
+    }
+  }
+}
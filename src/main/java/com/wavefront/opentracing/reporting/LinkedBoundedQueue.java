@@ -0,0 +1,47 @@
+package com.wavefront.opentracing.reporting;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BoundedQueue} backed by a {@link LinkedBlockingQueue}.
+ */
+class LinkedBoundedQueue<E> implements BoundedQueue<E> {
+
+  private final LinkedBlockingQueue<E> queue;
+
+  LinkedBoundedQueue(int capacity) {
+    this.queue = new LinkedBlockingQueue<>(capacity);
+  }
+
+  @Override
+  public boolean offer(E e) {
+    return queue.offer(e);
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    return queue.poll(timeout, unit);
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    return queue.drainTo(c, maxElements);
+  }
+
+  @Override
+  public int size() {
+    return queue.size();
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return queue.remainingCapacity();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+}
@@ -0,0 +1,216 @@
+package com.wavefront.opentracing.reporting;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock-free, array-backed {@link BoundedQueue} for many producers.
+ *
+ * All slots are preallocated, so inserting an element does not allocate. Producers claim a slot
+ * with a single CAS and never take a lock. Every slot carries a sequence number that tells
+ * producers and consumers whether the slot is free or holds a published element (D. Vyukov's
+ * bounded queue). The consumer side also tolerates multiple sending threads draining the queue.
+ *
+ * Consumers wait for elements on an empty queue according to a {@link WaitStrategy}.
+ */
+public class RingBufferQueue<E> implements BoundedQueue<E> {
+
+  private static final int SPIN_TRIES = 100;
+
+  private final int capacity;
+  // mask for power of two capacities, -1 otherwise
+  private final long mask;
+  private final AtomicReferenceArray<E> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private final WaitStrategy waitStrategy;
+
+  // only used by the blocking wait strategy
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+  /**
+   * @param capacity     Max number of elements in the queue
+   * @param waitStrategy How consumers wait for elements on an empty queue
+   * @throws IllegalArgumentException if the capacity is not greater than 0
+   */
+  public RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("invalid capacity");
+    }
+    this.capacity = capacity;
+    this.mask = Integer.bitCount(capacity) == 1 ? capacity - 1 : -1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    this.waitStrategy = waitStrategy;
+  }
+
+  private int index(long position) {
+    return (int) (mask >= 0 ? position & mask : position % capacity);
+  }
+
+  @Override
+  public boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    long position = tail.get();
+    int index;
+    while (true) {
+      index = index(position);
+      long diff = sequences.get(index) - position;
+      if (diff == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (diff < 0) {
+        // the slot still holds an element from the previous lap, i.e. the queue is full
+        return false;
+      } else {
+        // another producer claimed this position
+        position = tail.get();
+      }
+    }
+    slots.lazySet(index, e);
+    // publish the element to consumers
+    sequences.set(index, position + 1);
+    if (waitStrategy == WaitStrategy.BLOCKING && waitingConsumers.get() > 0) {
+      signalNotEmpty();
+    }
+    return true;
+  }
+
+  /**
+   * Removes the head of the queue without waiting.
+   *
+   * @return the head of the queue, or null if the queue is empty
+   */
+  E poll() {
+    long position = head.get();
+    int index;
+    while (true) {
+      index = index(position);
+      long diff = sequences.get(index) - (position + 1);
+      if (diff == 0) {
+        if (head.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = head.get();
+      } else if (diff < 0) {
+        // the element at this position has not been published yet, i.e. the queue is empty
+        return null;
+      } else {
+        // another consumer took this position
+        position = head.get();
+      }
+    }
+    E e = slots.get(index);
+    slots.lazySet(index, null);
+    // release the slot to producers of the next lap
+    sequences.set(index, position + capacity);
+    return e;
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    E e = poll();
+    if (e != null) {
+      return e;
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int tries = 0;
+    while (true) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return null;
+      }
+      switch (waitStrategy) {
+        case BLOCKING:
+          awaitNotEmpty(remaining);
+          break;
+        case YIELDING:
+          if (++tries > SPIN_TRIES) {
+            Thread.yield();
+          }
+          break;
+        case SPINNING:
+        default:
+          break;
+      }
+      e = poll();
+      if (e != null) {
+        return e;
+      }
+    }
+  }
+
+  private void awaitNotEmpty(long nanos) throws InterruptedException {
+    lock.lock();
+    try {
+      waitingConsumers.incrementAndGet();
+      try {
+        // re-check after registering as a waiter so that a concurrent offer cannot be missed
+        if (isEmpty()) {
+          notEmpty.awaitNanos(nanos);
+        }
+      } finally {
+        waitingConsumers.decrementAndGet();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void signalNotEmpty() {
+    lock.lock();
+    try {
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    int count = 0;
+    E e;
+    while (count < maxElements && (e = poll()) != null) {
+      c.add(e);
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  public int size() {
+    // read head first so that a concurrent poll cannot make the size negative
+    long headPosition = head.get();
+    long size = tail.get() - headPosition;
+    return (int) Math.max(0, Math.min(size, capacity));
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return capacity - size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+}
@@ -0,0 +1,237 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.Reference;
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.tracing.SpanLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * A finished span in the form that is written to and read back from a {@link DiskSpillBuffer}.
+ *
+ * The record holds the trace and span ids, start time and duration in microseconds, operation
+ * name, parent and follows-from span ids, tags and log events. Strings are written as UTF-8
+ * prefixed by their byte length, and lists by their size. The log events are last, so that
+ * records written without them are read as spans without logs. Lengths and sizes are checked
+ * against the bytes left in the record when reading, since the file may have been damaged.
+ */
+final class SpilledSpan {
+
+  private final String operationName;
+  private final long startTimeMicros;
+  private final long durationMicros;
+  private final UUID traceId;
+  private final UUID spanId;
+  @Nullable
+  private final List<UUID> parents;
+  @Nullable
+  private final List<UUID> follows;
+  private final List<Pair<String, String>> tags;
+  @Nullable
+  private final List<SpanLog> spanLogs;
+
+  private SpilledSpan(String operationName, long startTimeMicros, long durationMicros,
+                      UUID traceId, UUID spanId, @Nullable List<UUID> parents,
+                      @Nullable List<UUID> follows, List<Pair<String, String>> tags,
+                      @Nullable List<SpanLog> spanLogs) {
+    this.operationName = operationName;
+    this.startTimeMicros = startTimeMicros;
+    this.durationMicros = durationMicros;
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parents = parents;
+    this.follows = follows;
+    this.tags = tags;
+    this.spanLogs = spanLogs;
+  }
+
+  /**
+   * Encodes a finished span into a record.
+   *
+   * @param span the span to encode
+   * @return the record bytes
+   */
+  static byte[] encode(WavefrontSpan span) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+      DataOutputStream out = new DataOutputStream(bytes);
+      WavefrontSpanContext ctx = span.context();
+      out.writeLong(ctx.getTraceIdHigh());
+      out.writeLong(ctx.getTraceIdLow());
+      out.writeLong(ctx.getSpanIdHigh());
+      out.writeLong(ctx.getSpanIdLow());
+      out.writeLong(span.getStartTimeMicros());
+      out.writeLong(span.getDurationMicroseconds());
+      writeString(out, span.getOperationName());
+      writeReferences(out, span.getParents());
+      writeReferences(out, span.getFollows());
+      List<Pair<String, String>> tags = span.getTagsAsList();
+      out.writeInt(tags.size());
+      for (Pair<String, String> tag : tags) {
+        writeString(out, tag._1);
+        writeString(out, tag._2);
+      }
+      List<Pair<Long, Map<String, String>>> logs = span.getLogsAsList();
+      out.writeInt(logs.size());
+      for (Pair<Long, Map<String, String>> log : logs) {
+        out.writeLong(log._1);
+        out.writeInt(log._2.size());
+        for (Map.Entry<String, String> field : log._2.entrySet()) {
+          writeString(out, field.getKey());
+          writeString(out, field.getValue());
+        }
+      }
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // not thrown by ByteArrayOutputStream
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Decodes a record written by {@link #encode}.
+   *
+   * @param buffer the buffer positioned at the start of the record and limited to its end
+   * @return the decoded span
+   * @throws IOException if the record is corrupt
+   */
+  static SpilledSpan decode(ByteBuffer buffer) throws IOException {
+    try {
+      return decodeRecord(buffer);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("truncated spill record", e);
+    }
+  }
+
+  private static SpilledSpan decodeRecord(ByteBuffer buffer) throws IOException {
+    UUID traceId = new UUID(buffer.getLong(), buffer.getLong());
+    UUID spanId = new UUID(buffer.getLong(), buffer.getLong());
+    long startTimeMicros = buffer.getLong();
+    long durationMicros = buffer.getLong();
+    String operationName = readString(buffer);
+    List<UUID> parents = readIds(buffer);
+    List<UUID> follows = readIds(buffer);
+    int tagCount = readCount(buffer, 8);
+    List<Pair<String, String>> tags = new ArrayList<>(tagCount);
+    for (int i = 0; i < tagCount; i++) {
+      tags.add(Pair.of(readString(buffer), readString(buffer)));
+    }
+    return new SpilledSpan(operationName, startTimeMicros, durationMicros, traceId, spanId,
+        parents, follows, tags, readSpanLogs(buffer));
+  }
+
+  void send(WavefrontSender wavefrontSender, String source) throws IOException {
+    wavefrontSender.sendSpan(operationName, startTimeMicros / 1000, durationMicros / 1000, source,
+        traceId, spanId, parents, follows, tags, spanLogs);
+  }
+
+  String getOperationName() {
+    return operationName;
+  }
+
+  @Nullable
+  List<UUID> getParents() {
+    return parents;
+  }
+
+  List<Pair<String, String>> getTags() {
+    return tags;
+  }
+
+  @Nullable
+  List<SpanLog> getSpanLogs() {
+    return spanLogs;
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer buffer) throws IOException {
+    int length = readCount(buffer, 1);
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeReferences(DataOutputStream out, @Nullable List<Reference> references)
+      throws IOException {
+    if (references == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(references.size());
+    for (Reference reference : references) {
+      out.writeLong(reference.getSpanContext().getSpanIdHigh());
+      out.writeLong(reference.getSpanContext().getSpanIdLow());
+    }
+  }
+
+  /**
+   * Reads the size of a list or length of a string, checking that the elements of the given
+   * minimum size fit into the rest of the record.
+   */
+  private static int readCount(ByteBuffer buffer, int minElementBytes) throws IOException {
+    int count = buffer.getInt();
+    checkCount(buffer, count, minElementBytes);
+    return count;
+  }
+
+  private static void checkCount(ByteBuffer buffer, int count, int minElementBytes)
+      throws IOException {
+    if (count < 0 || count > buffer.remaining() / minElementBytes) {
+      throw new IOException("invalid length " + count + " in spill record");
+    }
+  }
+
+  @Nullable
+  private static List<SpanLog> readSpanLogs(ByteBuffer buffer) throws IOException {
+    // records spilled by earlier versions end after the tags
+    int count = buffer.hasRemaining() ? readCount(buffer, 12) : 0;
+    if (count == 0) {
+      return null;
+    }
+    List<SpanLog> spanLogs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      long timestampMicros = buffer.getLong();
+      int fieldCount = readCount(buffer, 8);
+      Map<String, String> fields = new LinkedHashMap<>();
+      for (int j = 0; j < fieldCount; j++) {
+        fields.put(readString(buffer), readString(buffer));
+      }
+      spanLogs.add(new SpanLog(timestampMicros, fields));
+    }
+    return spanLogs;
+  }
+
+  @Nullable
+  private static List<UUID> readIds(ByteBuffer buffer) throws IOException {
+    int count = buffer.getInt();
+    if (count == -1) {
+      return null;
+    }
+    checkCount(buffer, count, 16);
+    List<UUID> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ids.add(new UUID(buffer.getLong(), buffer.getLong()));
+    }
+    return ids;
+  }
+}
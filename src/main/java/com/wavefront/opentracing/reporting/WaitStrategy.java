@@ -0,0 +1,24 @@
+package com.wavefront.opentracing.reporting;
+
+/**
+ * How sending threads wait for spans on an empty ring buffer queue.
+ */
+public enum WaitStrategy {
+  /**
+   * Sending threads block until spans are reported. Reporting threads only pay for a signal
+   * while a sending thread is actually blocked. Lowest CPU usage.
+   */
+  BLOCKING,
+
+  /**
+   * Sending threads yield the CPU between checks for spans. Lower latency than
+   * {@link #BLOCKING}, at the cost of keeping sending threads runnable.
+   */
+  YIELDING,
+
+  /**
+   * Sending threads busy-spin while waiting for spans. Lowest latency, but each sending thread
+   * occupies a CPU core.
+   */
+  SPINNING
+}
@@ -2,24 +2,31 @@ package com.wavefront.opentracing.reporting;
 
 import com.wavefront.internal.reporter.WavefrontInternalReporter;
 import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Counter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.Histogram;
 import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
 import com.wavefront.opentracing.Reference;
 import com.wavefront.opentracing.WavefrontSpan;
 import com.wavefront.opentracing.WavefrontSpanContext;
 import com.wavefront.sdk.common.WavefrontSender;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
 
 /**
@@ -32,10 +39,20 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
 
   private final WavefrontSender wavefrontSender;
   private final String source;
-  private final LinkedBlockingQueue<WavefrontSpan> spanBuffer;
-  private final Thread sendingThread;
+  private final BoundedQueue<WavefrontSpan> spanBuffer;
+  private final List<Thread> sendingThreads;
+  private final int maxBatchSize;
+  private final long batchLingerNanos;
   private final Random random;
   private final float logPercent;
+  @Nullable
+  private final DiskSpillBuffer spillBuffer;
+  private final int replayBatchSize;
+  private final long replayIntervalNanos;
+  private final AtomicLong nextReplayNanos;
+
+  // how long an idle sending thread waits for spans before re-checking whether to stop
+  private static final long POLL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
 
   /**
    * Users create a WavefrontSpanReporter and provide it to the tracer, which upon initialization
@@ -45,6 +62,10 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
   private Counter spansDropped;
   private Counter spansReceived;
   private Counter reportErrors;
+  private Histogram batchSize;
+  private Histogram batchLatencyMicros;
+  private Counter spansSpilled;
+  private Counter spansReplayed;
 
   private volatile boolean stop = false;
 
@@ -52,6 +73,15 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
     private String source;
     private int maxQueueSize = 50000;
     private float logPercent = 0.1f;
+    private int maxBatchSize = 1000;
+    private long batchLingerMillis = 0;
+    private int sendingThreads = 1;
+    @Nullable
+    private WaitStrategy ringBufferWaitStrategy = null;
+    @Nullable
+    private File spillDirectory = null;
+    private long spillMaxBytes = 0;
+    private int spillReplayRate = 1000;
 
     public Builder() {
       this.source = getDefaultSource();
@@ -91,6 +121,21 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
       return this;
     }
 
+    /**
+     * Use a preallocated, lock-free ring buffer as the in-memory buffer instead of the default
+     * linked queue. Reporting a span then neither allocates nor takes a lock.
+     *
+     * @param waitStrategy How sending threads wait for spans on an empty buffer
+     * @return {@code this}
+     */
+    public Builder withRingBufferQueue(WaitStrategy waitStrategy) {
+      if (waitStrategy == null) {
+        throw new IllegalArgumentException("invalid wait strategy");
+      }
+      this.ringBufferWaitStrategy = waitStrategy;
+      return this;
+    }
+
     /**
      * Set the percent of log messages to be logged. Defaults to 10%.
      *
@@ -106,42 +151,242 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
       return this;
     }
 
+    /**
+     * Set the max number of spans a sending thread takes from the in-memory buffer at once.
+     * Defaults to 1000.
+     *
+     * @param maxBatchSize Max number of spans per batch
+     * @return {@code this}
+     * @throws IllegalArgumentException if the batch size is not greater than 0
+     */
+    public Builder withMaxBatchSize(int maxBatchSize) {
+      if (maxBatchSize <= 0) {
+        throw new IllegalArgumentException("invalid max batch size");
+      }
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Set how long a sending thread waits for a batch to fill up before sending it. Defaults to 0,
+     * i.e. a batch holds the spans that are buffered when the sending thread becomes available.
+     *
+     * @param batchLingerMillis Max time to wait for more spans, in milliseconds
+     * @return {@code this}
+     * @throws IllegalArgumentException if the linger time is negative
+     */
+    public Builder withBatchLingerMillis(long batchLingerMillis) {
+      if (batchLingerMillis < 0) {
+        throw new IllegalArgumentException("invalid batch linger time");
+      }
+      this.batchLingerMillis = batchLingerMillis;
+      return this;
+    }
+
+    /**
+     * Set the number of threads sending spans from the in-memory buffer. Defaults to 1.
+     *
+     * @param sendingThreads Number of sending threads
+     * @return {@code this}
+     * @throws IllegalArgumentException if the number of threads is not greater than 0
+     */
+    public Builder withSendingThreads(int sendingThreads) {
+      if (sendingThreads <= 0) {
+        throw new IllegalArgumentException("invalid number of sending threads");
+      }
+      this.sendingThreads = sendingThreads;
+      return this;
+    }
+
+    /**
+     * Spill spans that don't fit into the in-memory buffer to memory-mapped segment files on
+     * local disk instead of dropping them. Spilled spans are replayed once the in-memory buffer
+     * has drained, including spans left in the directory by a previous process. When the files
+     * reach the byte cap, the oldest segment is evicted.
+     *
+     * @param directory Directory for the segment files, created if needed
+     * @param maxBytes Max total size of the segment files, in bytes
+     * @return {@code this}
+     * @throws IllegalArgumentException if the directory is null or the size is not greater than 0
+     */
+    public Builder withDiskSpill(File directory, long maxBytes) {
+      if (directory == null) {
+        throw new IllegalArgumentException("invalid spill directory");
+      }
+      if (maxBytes <= 0) {
+        throw new IllegalArgumentException("invalid max spill size");
+      }
+      this.spillDirectory = directory;
+      this.spillMaxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Set the max rate at which spilled spans are replayed once the in-memory buffer has
+     * drained. Defaults to 1000 spans per second.
+     *
+     * @param spansPerSecond Max spans replayed per second
+     * @return {@code this}
+     * @throws IllegalArgumentException if the rate is not greater than 0
+     */
+    public Builder withSpillReplayRate(int spansPerSecond) {
+      if (spansPerSecond <= 0) {
+        throw new IllegalArgumentException("invalid spill replay rate");
+      }
+      this.spillReplayRate = spansPerSecond;
+      return this;
+    }
+
     /**
      * Builds a {@link WavefrontSpanReporter} for sending opentracing spans to a
      * WavefrontSender that can send those spans either be a via proxy or direct ingestion.
      *
      * @return {@link WavefrontSpanReporter}
+     * @throws UncheckedIOException if the disk spill directory cannot be opened
      */
     public WavefrontSpanReporter build(WavefrontSender wavefrontSender) {
-      return new WavefrontSpanReporter(wavefrontSender, this.source, this.maxQueueSize, this.logPercent);
+      return new WavefrontSpanReporter(wavefrontSender, this);
     }
   }
 
-  private WavefrontSpanReporter(WavefrontSender wavefrontSender, String source, int maxQueueSize,
-                                float logPercent) {
+  private WavefrontSpanReporter(WavefrontSender wavefrontSender, Builder builder) {
     this.wavefrontSender = wavefrontSender;
-    this.source = source;
-    this.spanBuffer = new LinkedBlockingQueue<>(maxQueueSize);
+    this.source = builder.source;
+    this.spanBuffer = builder.ringBufferWaitStrategy == null ?
+        new LinkedBoundedQueue<>(builder.maxQueueSize) :
+        new RingBufferQueue<>(builder.maxQueueSize, builder.ringBufferWaitStrategy);
+    this.maxBatchSize = builder.maxBatchSize;
+    this.batchLingerNanos = TimeUnit.MILLISECONDS.toNanos(builder.batchLingerMillis);
     this.random = new Random();
-    this.logPercent = logPercent;
+    this.logPercent = builder.logPercent;
+    if (builder.spillDirectory == null) {
+      this.spillBuffer = null;
+    } else {
+      try {
+        this.spillBuffer = new DiskSpillBuffer(builder.spillDirectory, builder.spillMaxBytes,
+            DiskSpillBuffer.DEFAULT_SEGMENT_SIZE);
+      } catch (IOException e) {
+        throw new UncheckedIOException("cannot open spill directory", e);
+      }
+    }
+    // replay in batches of a tenth of a second's worth of spans
+    this.replayBatchSize = Math.max(1, Math.min(maxBatchSize, builder.spillReplayRate / 10));
+    this.replayIntervalNanos = TimeUnit.SECONDS.toNanos(replayBatchSize) /
+        builder.spillReplayRate;
+    this.nextReplayNanos = new AtomicLong(System.nanoTime());
 
-    sendingThread = new Thread(this, "wavefrontSpanReporter");
-    sendingThread.setDaemon(true);
-    sendingThread.start();
+    sendingThreads = new ArrayList<>(builder.sendingThreads);
+    for (int i = 0; i < builder.sendingThreads; i++) {
+      Thread sendingThread = new Thread(this, builder.sendingThreads == 1 ?
+          "wavefrontSpanReporter" : "wavefrontSpanReporter-" + i);
+      sendingThread.setDaemon(true);
+      sendingThreads.add(sendingThread);
+    }
+    for (Thread sendingThread : sendingThreads) {
+      sendingThread.start();
+    }
   }
 
   @Override
   public void run() {
-    while (!stop) {
+    List<WavefrontSpan> batch = new ArrayList<>(Math.min(maxBatchSize, 1024));
+    // keep sending after stop until the buffer is flushed; close() bounds how long that takes
+    while (!stop || !spanBuffer.isEmpty()) {
       try {
-        WavefrontSpan span = spanBuffer.take();
-        send(span);
+        if (fillBatch(batch)) {
+          sendBatch(batch);
+        }
+        if (spillBuffer != null && !stop) {
+          // create the next spill segment here rather than on the threads reporting spans
+          spillBuffer.maintain();
+          if (spanBuffer.isEmpty()) {
+            replaySpilled();
+          }
+        }
       } catch (InterruptedException ex) {
         if (logger.isLoggable(Level.INFO)) {
           logger.info("reporting thread interrupted");
         }
       } catch (Throwable ex) {
         logger.log(Level.WARNING, "Error processing buffer", ex);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Takes up to maxBatchSize spans from the buffer, waiting at most batchLingerNanos for the
+   * batch to fill up once the first span is available.
+   *
+   * @return true if the batch holds any spans
+   */
+  private boolean fillBatch(List<WavefrontSpan> batch) throws InterruptedException {
+    // wake up in time to replay spilled spans
+    long timeoutNanos = spillBuffer == null || spillBuffer.isEmpty() ? POLL_TIMEOUT_NANOS :
+        Math.min(POLL_TIMEOUT_NANOS, replayIntervalNanos);
+    WavefrontSpan first = spanBuffer.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+    if (first == null) {
+      return false;
+    }
+    batch.add(first);
+    spanBuffer.drainTo(batch, maxBatchSize - 1);
+    if (batchLingerNanos > 0 && batch.size() < maxBatchSize) {
+      long deadline = System.nanoTime() + batchLingerNanos;
+      long remaining;
+      while (batch.size() < maxBatchSize && !stop &&
+          (remaining = deadline - System.nanoTime()) > 0) {
+        WavefrontSpan span = spanBuffer.poll(remaining, TimeUnit.NANOSECONDS);
+        if (span == null) {
+          break;
+        }
+        batch.add(span);
+        spanBuffer.drainTo(batch, maxBatchSize - batch.size());
+      }
+    }
+    return true;
+  }
+
+  private void sendBatch(List<WavefrontSpan> batch) {
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < batch.size(); i++) {
+      send(batch.get(i));
+    }
+    if (metricsReporter != null) {
+      batchSize.update(batch.size());
+      batchLatencyMicros.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+  }
+
+  /**
+   * Sends up to replayBatchSize spilled spans if the replay rate allows, stopping early if new
+   * spans arrive in the in-memory buffer.
+   */
+  private void replaySpilled() {
+    long now = System.nanoTime();
+    long next = nextReplayNanos.get();
+    if (now - next < 0 || spillBuffer.isEmpty() ||
+        !nextReplayNanos.compareAndSet(next, now + replayIntervalNanos)) {
+      return;
+    }
+    for (int i = 0; i < replayBatchSize && !stop && spanBuffer.isEmpty(); i++) {
+      SpilledSpan span = spillBuffer.poll();
+      if (span == null) {
+        return;
+      }
+      try {
+        span.send(wavefrontSender, source);
+        if (metricsReporter != null) {
+          spansReplayed.inc();
+        }
+      } catch (IOException e) {
+        if (loggingAllowed()) {
+          logger.log(Level.WARNING, "error replaying spilled span", e);
+        }
+        if (metricsReporter != null) {
+          reportErrors.inc();
+          spansDropped.inc();
+        }
       }
     }
   }
@@ -152,6 +397,12 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
       spansReceived.inc();
     }
     if (!spanBuffer.offer(span)) {
+      if (spillBuffer != null && spillBuffer.append(SpilledSpan.encode(span))) {
+        if (metricsReporter != null) {
+          spansSpilled.inc();
+        }
+        return;
+      }
       if (metricsReporter != null) {
         spansDropped.inc();
       }
@@ -182,7 +433,7 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
 
       wavefrontSender.sendSpan(span.getOperationName(), span.getStartTimeMicros() / 1000,
           span.getDurationMicroseconds() / 1000, source, ctx.getTraceId(), ctx.getSpanId(),
-          parents, follows, span.getTagsAsList(), null);
+          parents, follows, span.getTagsAsList(), span.getSpanLogs());
     } catch (IOException e) {
       if (loggingAllowed()) {
         logger.log(Level.WARNING, "error reporting span: " + span, e);
@@ -206,14 +457,23 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
     return wavefrontSender;
   }
 
+  /**
+   * Gets the fraction of the in-memory buffer that is in use.
+   *
+   * @return the buffer utilization, between 0.0 (empty) and 1.0 (full)
+   */
+  public double getQueueUtilization() {
+    int size = spanBuffer.size();
+    int capacity = size + spanBuffer.remainingCapacity();
+    return capacity == 0 ? 1.0 : (double) size / capacity;
+  }
+
   @Override
   public int getFailureCount() {
     return wavefrontSender.getFailureCount();
   }
 
   public void setMetricsReporter(WavefrontInternalReporter metricsReporter) {
-    this.metricsReporter = metricsReporter;
-
     // init internal metrics
     metricsReporter.newGauge(new MetricName("reporter.queue.size", Collections.emptyMap()),
         () -> (() -> (double) spanBuffer.size())
@@ -226,6 +486,22 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
         Collections.emptyMap()));
     reportErrors = metricsReporter.newCounter(new MetricName("reporter.errors",
         Collections.emptyMap()));
+    batchSize = metricsReporter.newHistogram(new MetricName("reporter.batch.size",
+        Collections.emptyMap()));
+    batchLatencyMicros = metricsReporter.newHistogram(new MetricName(
+        "reporter.batch.latency.micros", Collections.emptyMap()));
+    if (spillBuffer != null) {
+      metricsReporter.newGauge(new MetricName("reporter.spill.size", Collections.emptyMap()),
+          () -> (() -> (double) spillBuffer.size()));
+      spansSpilled = metricsReporter.newCounter(new MetricName("reporter.spans.spilled",
+          Collections.emptyMap()));
+      spansReplayed = metricsReporter.newCounter(new MetricName("reporter.spans.replayed",
+          Collections.emptyMap()));
+      spillBuffer.setMetricsReporter(metricsReporter);
+    }
+
+    // publish the reporter only once the metrics above are initialized
+    this.metricsReporter = metricsReporter;
   }
 
   @Override
@@ -233,10 +509,18 @@ public class WavefrontSpanReporter implements Reporter, Runnable {
     stop = true;
     try {
       // wait for 5 secs max
-      sendingThread.join(5000);
+      long deadline = System.currentTimeMillis() + 5000;
+      for (Thread sendingThread : sendingThreads) {
+        sendingThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+      }
     } catch (InterruptedException ex) {
       // no-op
     }
+    if (spillBuffer != null) {
+      // replay has stopped, or stops reading once the spill buffer is closed; spilled spans that
+      // were not replayed yet are replayed by the next reporter
+      spillBuffer.close();
+    }
     // flush buffer & close client
     wavefrontSender.close();
   }
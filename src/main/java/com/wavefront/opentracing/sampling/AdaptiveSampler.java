@@ -0,0 +1,112 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A head sampler whose rate adapts to the pressure on a bounded resource, typically the
+ * utilization of the in-memory buffer of a
+ * {@link com.wavefront.opentracing.reporting.WavefrontSpanReporter}.
+ *
+ * The rate starts at 1.0 and is re-evaluated at most once per adjustment interval as spans are
+ * sampled. While the pressure is above the high watermark, the rate is halved down to the
+ * minimum rate. While the pressure is below the low watermark, the rate is raised additively back
+ * towards 1.0. In between, the rate is held.
+ *
+ * Decisions are derived from the trace id like those of a rate sampler, so whole traces are kept
+ * or shed. A trace kept at a lower rate is also kept at any higher rate, so services shedding at
+ * different rates still keep the same subset of traces.
+ */
+public class AdaptiveSampler implements Sampler {
+
+  private static final long RATE_SCALE = 1_000_000;
+  private static final double RATE_INCREASE = 0.05;
+  private static final double RATE_DECREASE_FACTOR = 0.5;
+  private static final long DEFAULT_ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final DoubleSupplier pressure;
+  private final double lowWatermark;
+  private final double highWatermark;
+  private final double minRate;
+  private final long adjustIntervalNanos;
+  private final AtomicLong nextAdjustNanos;
+
+  /**
+   * Out of RATE_SCALE, the trace ids that are sampled. Only written by the thread that wins the
+   * adjustment.
+   */
+  private volatile long boundary = RATE_SCALE;
+
+  /**
+   * Constructor.
+   *
+   * @param pressure Supplies the current pressure, between 0.0 (idle) and 1.0 (saturated)
+   * @param lowWatermark Pressure below which the rate is raised
+   * @param highWatermark Pressure above which the rate is lowered
+   * @param minRate Rate below which traces are not shed, between 0.0 and 1.0
+   * @throws IllegalArgumentException if the watermarks are not ordered values between 0.0 and
+   *                                  1.0 or the min rate is not between 0.0 and 1.0
+   */
+  public AdaptiveSampler(DoubleSupplier pressure, double lowWatermark, double highWatermark,
+                         double minRate) {
+    this(pressure, lowWatermark, highWatermark, minRate, DEFAULT_ADJUST_INTERVAL_NANOS);
+  }
+
+  AdaptiveSampler(DoubleSupplier pressure, double lowWatermark, double highWatermark,
+                  double minRate, long adjustIntervalNanos) {
+    if (pressure == null) {
+      throw new IllegalArgumentException("invalid pressure supplier");
+    }
+    if (lowWatermark < 0.0 || highWatermark > 1.0 || lowWatermark > highWatermark) {
+      throw new IllegalArgumentException("invalid watermarks");
+    }
+    if (minRate < 0.0 || minRate > 1.0) {
+      throw new IllegalArgumentException("invalid min rate");
+    }
+    this.pressure = pressure;
+    this.lowWatermark = lowWatermark;
+    this.highWatermark = highWatermark;
+    this.minRate = minRate;
+    this.adjustIntervalNanos = adjustIntervalNanos;
+    this.nextAdjustNanos = new AtomicLong(System.nanoTime());
+  }
+
+  @Override
+  public boolean sample(String operationName, long traceId, long duration) {
+    maybeAdjust();
+    return (traceId & Long.MAX_VALUE) % RATE_SCALE < boundary;
+  }
+
+  @Override
+  public boolean isEarly() {
+    return true;
+  }
+
+  /**
+   * @return the current sampling rate, between the min rate and 1.0
+   */
+  public double getRate() {
+    return (double) boundary / RATE_SCALE;
+  }
+
+  private void maybeAdjust() {
+    long now = System.nanoTime();
+    long next = nextAdjustNanos.get();
+    if (now - next < 0 || !nextAdjustNanos.compareAndSet(next, now + adjustIntervalNanos)) {
+      return;
+    }
+    double current = pressure.getAsDouble();
+    double rate = getRate();
+    if (current > highWatermark) {
+      rate = Math.max(minRate, rate * RATE_DECREASE_FACTOR);
+    } else if (current < lowWatermark) {
+      rate = Math.min(1.0, rate + RATE_INCREASE);
+    } else {
+      return;
+    }
+    boundary = Math.round(rate * RATE_SCALE);
+  }
+}
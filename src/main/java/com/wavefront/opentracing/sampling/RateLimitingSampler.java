@@ -0,0 +1,149 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.sdk.entities.tracing.sampling.Sampler;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A head sampler that caps the number of traces started per second for each operation, so that a
+ * single hot operation cannot crowd out the spans of all other operations.
+ *
+ * Each operation has a token bucket that refills at its rate and holds up to one second worth of
+ * spans. Operations without a configured rate get the default rate. At most a bounded number of
+ * operations get their own bucket; beyond that, new operations share a single bucket with the
+ * default rate.
+ *
+ * The sampler only decides for spans that don't inherit a sampling decision, i.e. for the root
+ * spans of traces, so a trace is either kept or dropped as a whole.
+ */
+public class RateLimitingSampler implements Sampler {
+
+  static final int DEFAULT_MAX_OPERATIONS = 1000;
+
+  private final Bucket defaultBucket;
+  private final Bucket overflowBucket;
+  private final int maxOperations;
+  private final LongSupplier nanoTime;
+  private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param spansPerSecond Max number of traces started per second for each operation
+   * @throws IllegalArgumentException if the rate is negative or not finite
+   */
+  public RateLimitingSampler(double spansPerSecond) {
+    this(spansPerSecond, Collections.emptyMap());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param defaultSpansPerSecond Max number of traces started per second for operations without
+   *                              a configured rate
+   * @param operationSpansPerSecond Max number of traces started per second, by operation name
+   * @throws IllegalArgumentException if a rate is negative or not finite
+   */
+  public RateLimitingSampler(double defaultSpansPerSecond,
+                             Map<String, Double> operationSpansPerSecond) {
+    this(defaultSpansPerSecond, operationSpansPerSecond, DEFAULT_MAX_OPERATIONS,
+        System::nanoTime);
+  }
+
+  RateLimitingSampler(double defaultSpansPerSecond, Map<String, Double> operationSpansPerSecond,
+                      int maxOperations, LongSupplier nanoTime) {
+    if (operationSpansPerSecond == null) {
+      throw new IllegalArgumentException("invalid operation rates");
+    }
+    this.nanoTime = nanoTime;
+    this.maxOperations = maxOperations;
+    long now = nanoTime.getAsLong();
+    this.defaultBucket = new Bucket(defaultSpansPerSecond, now);
+    this.overflowBucket = new Bucket(defaultSpansPerSecond, now);
+    for (Map.Entry<String, Double> entry : operationSpansPerSecond.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        throw new IllegalArgumentException("invalid operation rate");
+      }
+      buckets.put(entry.getKey(), new Bucket(entry.getValue(), now));
+    }
+  }
+
+  @Override
+  public boolean sample(String operationName, long traceId, long duration) {
+    return bucket(operationName).tryAcquire(nanoTime.getAsLong());
+  }
+
+  @Override
+  public boolean isEarly() {
+    return true;
+  }
+
+  private Bucket bucket(String operationName) {
+    Bucket bucket = buckets.get(operationName);
+    if (bucket != null) {
+      return bucket;
+    }
+    if (buckets.size() >= maxOperations) {
+      return overflowBucket;
+    }
+    return buckets.computeIfAbsent(operationName,
+        name -> new Bucket(defaultBucket, nanoTime.getAsLong()));
+  }
+
+  /**
+   * A token bucket kept as the theoretical arrival time of the next span (the generic cell rate
+   * algorithm), so that a span is admitted with a single compare-and-set.
+   */
+  private static final class Bucket {
+    // nanos between two spans at the bucket's rate, or -1 if no span is admitted
+    private final long intervalNanos;
+    // how far the arrival time may run ahead of the current time, i.e. the burst size
+    private final long toleranceNanos;
+    private final AtomicLong arrivalNanos;
+
+    Bucket(double spansPerSecond, long nowNanos) {
+      if (spansPerSecond < 0 || Double.isNaN(spansPerSecond) ||
+          Double.isInfinite(spansPerSecond)) {
+        throw new IllegalArgumentException("invalid spans per second");
+      }
+      if (spansPerSecond == 0) {
+        intervalNanos = -1;
+        toleranceNanos = 0;
+      } else {
+        intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / spansPerSecond));
+        // a full bucket holds one second worth of spans, and at least one span
+        toleranceNanos = Math.max(intervalNanos,
+            TimeUnit.SECONDS.toNanos(1) / intervalNanos * intervalNanos);
+      }
+      // start with a full bucket
+      arrivalNanos = new AtomicLong(nowNanos - toleranceNanos);
+    }
+
+    Bucket(Bucket template, long nowNanos) {
+      intervalNanos = template.intervalNanos;
+      toleranceNanos = template.toleranceNanos;
+      arrivalNanos = new AtomicLong(nowNanos - toleranceNanos);
+    }
+
+    boolean tryAcquire(long nowNanos) {
+      if (intervalNanos < 0) {
+        return false;
+      }
+      while (true) {
+        long arrival = arrivalNanos.get();
+        long next = Math.max(arrival - nowNanos, -toleranceNanos) + intervalNanos;
+        if (next > 0) {
+          return false;
+        }
+        if (arrivalNanos.compareAndSet(arrival, nowNanos + next)) {
+          return true;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common {@link TracePolicy} implementations.
+ */
+public final class TracePolicies {
+
+  private TracePolicies() {
+  }
+
+  /**
+   * Keeps traces with at least one span tagged as an error.
+   *
+   * @return the policy
+   */
+  public static TracePolicy anyError() {
+    return (spans, localRoot) -> {
+      for (int i = 0; i < spans.size(); i++) {
+        if (spans.get(i).isError()) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+
+  /**
+   * Keeps traces whose local root span took longer than the given duration.
+   *
+   * @param duration the duration threshold
+   * @param unit the unit of the duration
+   * @return the policy
+   */
+  public static TracePolicy rootDurationOver(long duration, TimeUnit unit) {
+    long thresholdMicros = unit.toMicros(duration);
+    return (spans, localRoot) ->
+        localRoot != null && localRoot.getDurationMicroseconds() > thresholdMicros;
+  }
+
+  /**
+   * Keeps traces with at least one span that took longer than the given duration.
+   *
+   * @param duration the duration threshold
+   * @param unit the unit of the duration
+   * @return the policy
+   */
+  public static TracePolicy anySpanDurationOver(long duration, TimeUnit unit) {
+    long thresholdMicros = unit.toMicros(duration);
+    return (spans, localRoot) -> {
+      for (int i = 0; i < spans.size(); i++) {
+        WavefrontSpan span = spans.get(i);
+        if (span.getDurationMicroseconds() > thresholdMicros) {
+          return true;
+        }
+      }
+      return false;
+    };
+  }
+}
@@ -0,0 +1,25 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.opentracing.WavefrontSpan;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * A trace-level sampling policy, applied by tail sampling to all the finished spans of a trace
+ * that were buffered in this process.
+ */
+@FunctionalInterface
+public interface TracePolicy {
+
+  /**
+   * Decides whether to keep a trace.
+   *
+   * @param spans the finished spans of the trace in this process
+   * @param localRoot the span that started the trace in this process, or null if the decision is
+   *                  made before it finished, e.g. because the trace timed out
+   * @return true to report all the spans, false to leave the decision to other policies
+   */
+  boolean keep(List<WavefrontSpan> spans, @Nullable WavefrontSpan localRoot);
+}
@@ -0,0 +1,88 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.opentracing.reporting.ConsoleReporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link Baggage}.
+ */
+public class BaggageTest {
+
+  @Test
+  public void testMatchesLinkedHashMap() {
+    Map<String, String> base = new LinkedHashMap<>();
+    base.put("b1", "v1");
+    base.put("b2", "v2");
+    Map<String, String> expected = new LinkedHashMap<>(base);
+    Baggage baggage = Baggage.of(base);
+
+    // enough items to fold the chain into a new base map several times
+    for (int i = 0; i < 3 * Baggage.MAX_CHAIN_LENGTH; i++) {
+      String key = "k" + (i % 7);
+      String value = "v" + i;
+      baggage = baggage.with(key, value);
+      expected.put(key, value);
+      if (i % 5 == 0) {
+        baggage = baggage.with("b1", value);
+        expected.put("b1", value);
+      }
+      assertEquals(expected, baggage);
+      assertEquals(expected.hashCode(), baggage.hashCode());
+      assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(baggage.entrySet()));
+    }
+    assertEquals(expected.size(), baggage.size());
+    assertNull(baggage.get("missing"));
+    assertFalse(baggage.containsKey("missing"));
+    // the base map is not modified
+    assertEquals(2, base.size());
+    assertEquals("v1", base.get("b1"));
+  }
+
+  @Test
+  public void testSharing() {
+    assertSame(Baggage.EMPTY, Baggage.of(null));
+    assertSame(Baggage.EMPTY, Baggage.of(new HashMap<>()));
+    Baggage baggage = Baggage.EMPTY.with("customer", "testCustomer");
+    assertSame(baggage, Baggage.of(baggage));
+    assertSame(baggage, baggage.with("customer", "testCustomer"));
+    assertTrue(Baggage.EMPTY.isEmpty());
+
+    Map.Entry<String, String> entry = baggage.entrySet().iterator().next();
+    assertThrows(UnsupportedOperationException.class, () -> entry.setValue("other"));
+  }
+
+  @Test
+  public void testChildContextsShareBaggage() {
+    WavefrontSpanContext parent = new WavefrontSpanContext(UUID.randomUUID(), UUID.randomUUID()).
+        withBaggageItem("customer", "testCustomer").withBaggageItem("requestType", "mobile");
+    WavefrontTracer tracer = new WavefrontTracer.Builder(
+        new ConsoleReporter("source"),
+        Utils.buildApplicationTags()).build();
+    WavefrontSpanContext child = (WavefrontSpanContext) tracer.buildSpan("child").
+        asChildOf(parent).start().context();
+    assertSame(parent.getBaggage(), child.getBaggage());
+
+    List<String> keys = new ArrayList<>();
+    for (Map.Entry<String, String> item : child.withBaggageItem("region", "us").baggageItems()) {
+      keys.add(item.getKey());
+    }
+    assertEquals(3, keys.size());
+    assertEquals("region", keys.get(2));
+    assertEquals(2, parent.getBaggage().size());
+  }
+}
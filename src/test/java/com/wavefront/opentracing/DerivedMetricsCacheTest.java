@@ -0,0 +1,182 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.internal.reporter.WavefrontInternalReporter;
+import com.wavefront.internal_reporter_java.io.dropwizard.metrics5.MetricName;
+import com.wavefront.opentracing.clock.Clock;
+import com.wavefront.sdk.common.Pair;
+import com.wavefront.sdk.common.WavefrontSender;
+import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for {@link DerivedMetricsCache}.
+ */
+public class DerivedMetricsCacheTest {
+
+  private final AtomicLong nowMicros = new AtomicLong(TimeUnit.MINUTES.toMicros(1000));
+
+  private final Clock clock = new Clock() {
+    @Override
+    public long currentTimeMicros() {
+      return nowMicros.get();
+    }
+
+    @Override
+    public long nanoTime() {
+      return nowMicros.get() * 1000;
+    }
+  };
+
+  private WavefrontInternalReporter newDerivedReporter() {
+    return new WavefrontInternalReporter.Builder().prefixedWith("tracing.derived").
+        build(createNiceMock(WavefrontSender.class));
+  }
+
+  @Test
+  public void testCacheHit() {
+    DerivedMetricsCache cache = new DerivedMetricsCache(newDerivedReporter(),
+        buildApplicationTags(), createNiceMock(WavefrontSender.class), "source", clock, 10);
+    DerivedMetricsCache.DerivedMetrics metrics = cache.get("myApplication", "myService", null,
+        null, "op", "none");
+    // equal, but not identical, dimensions hit the same entry
+    assertSame(metrics, cache.get(new String("myApplication"), "myService", null, null,
+        new String("op"), "none"));
+    assertNotSame(metrics, cache.get("myApplication", "myService", null, null, "op", "jaxrs"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testBoundedSize() {
+    DerivedMetricsCache cache = new DerivedMetricsCache(newDerivedReporter(),
+        buildApplicationTags(), createNiceMock(WavefrontSender.class), "source", clock, 1);
+    DerivedMetricsCache.DerivedMetrics metrics = cache.get("myApplication", "myService", null,
+        null, "op1", "none");
+    assertSame(metrics, cache.get("myApplication", "myService", null, null, "op1", "none"));
+    // keys beyond the bound are resolved but not cached
+    assertNotSame(cache.get("myApplication", "myService", null, null, "op2", "none"),
+        cache.get("myApplication", "myService", null, null, "op2", "none"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testStripedUpdates() throws InterruptedException, IOException {
+    WavefrontInternalReporter reporter = newDerivedReporter();
+    WavefrontSender sender = createMock(WavefrontSender.class);
+    Capture<List<Pair<Double, Integer>>> centroids = newCapture();
+    Capture<Map<String, String>> tags = newCapture();
+    sender.sendDistribution(eq("tracing.derived.myApplication.myService.op.duration.micros"),
+        capture(centroids), eq(EnumSet.of(HistogramGranularity.MINUTE)), anyLong(),
+        eq("source"), capture(tags));
+    expectLastCall().once();
+    replay(sender);
+    DerivedMetricsCache cache = new DerivedMetricsCache(reporter, buildApplicationTags(), sender,
+        "source", clock, 10);
+    int threads = 4;
+    int updates = 1000;
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread(() -> {
+        for (int j = 0; j < updates; j++) {
+          cache.get("myApplication", "myService", null, null, "op", "none").
+              update(2500, j % 10 == 0);
+        }
+        done.countDown();
+      }).start();
+    }
+    done.await();
+    // the durations are sent once their minute has closed
+    nowMicros.addAndGet(TimeUnit.MINUTES.toMicros(1));
+    cache.flush();
+
+    Map<String, String> pointTags = new HashMap<>();
+    pointTags.put("operationName", "op");
+    pointTags.put("component", "none");
+    assertEquals(threads * updates, reporter.newCounter(new MetricName(
+        "myApplication.myService.op.invocation", pointTags)).getCount());
+    assertEquals(threads * updates / 10, reporter.newCounter(new MetricName(
+        "myApplication.myService.op.error", pointTags)).getCount());
+    // durations are truncated to millis span by span
+    assertEquals(threads * updates * 2, reporter.newCounter(new MetricName(
+        "myApplication.myService.op.total_time.millis", pointTags)).getCount());
+    verify(sender);
+    // all durations fall into a single bucket
+    assertEquals(1, centroids.getValue().size());
+    assertEquals(2500, centroids.getValue().get(0)._1, 2500 * 0.016);
+    assertEquals(threads * updates, (int) centroids.getValue().get(0)._2);
+    assertEquals("myApplication", tags.getValue().get("application"));
+    assertEquals("op", tags.getValue().get("operationName"));
+
+    // nothing is sent for an interval without updates
+    cache.flush();
+    verify(sender);
+  }
+
+  @Test
+  public void testDurationsBinnedByMinute() throws IOException {
+    WavefrontSender sender = createMock(WavefrontSender.class);
+    Capture<List<Pair<Double, Integer>>> centroids = newCapture(CaptureType.ALL);
+    sender.sendDistribution(eq("tracing.derived.myApplication.myService.op.duration.micros"),
+        capture(centroids), eq(EnumSet.of(HistogramGranularity.MINUTE)),
+        eq(TimeUnit.MINUTES.toMillis(1000)), eq("source"), anyObject());
+    expectLastCall().once();
+    sender.sendDistribution(eq("tracing.derived.myApplication.myService.op.duration.micros"),
+        capture(centroids), eq(EnumSet.of(HistogramGranularity.MINUTE)),
+        eq(TimeUnit.MINUTES.toMillis(1001)), eq("source"), anyObject());
+    expectLastCall().once();
+    replay(sender);
+    DerivedMetricsCache cache = new DerivedMetricsCache(newDerivedReporter(),
+        buildApplicationTags(), sender, "source", clock, 10);
+    DerivedMetricsCache.DerivedMetrics metrics = cache.get("myApplication", "myService", null,
+        null, "op", "none");
+
+    metrics.update(1000, false);
+    metrics.update(1000, false);
+    nowMicros.addAndGet(TimeUnit.MINUTES.toMicros(1));
+    metrics.update(5000, false);
+    // only the closed minute is sent, once
+    cache.flush();
+    cache.flush();
+    assertEquals(1, centroids.getValues().size());
+    assertEquals(2, (int) centroids.getValues().get(0).get(0)._2);
+
+    nowMicros.addAndGet(TimeUnit.MINUTES.toMicros(1));
+    cache.flush();
+    cache.close();
+    verify(sender);
+    assertEquals(5000, centroids.getValues().get(1).get(0)._1, 5000 * 0.016);
+  }
+
+  @Test
+  public void testSanitize() {
+    assertEquals("my-Application.my-Service.op", DerivedMetricsCache.sanitize(
+        "my Application.my \t Service.op"));
+    assertEquals("app.svc.\\\"op\\\"", DerivedMetricsCache.sanitize("app.svc.\"op\""));
+  }
+}
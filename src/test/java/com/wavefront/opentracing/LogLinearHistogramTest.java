@@ -0,0 +1,55 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.common.Pair;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LogLinearHistogram}.
+ */
+public class LogLinearHistogramTest {
+
+  @Test
+  public void testBucketBounds() {
+    // small values are exact
+    for (int i = 0; i < 32; i++) {
+      assertEquals(i, LogLinearHistogram.bucketIndex(i));
+      assertEquals((double) i, LogLinearHistogram.bucketMidpoint(i));
+    }
+    int previous = LogLinearHistogram.bucketIndex(31);
+    for (long value = 32; value <= LogLinearHistogram.MAX_VALUE; value = value * 9 / 8 + 1) {
+      int index = LogLinearHistogram.bucketIndex(value);
+      assertTrue(index >= previous);
+      previous = index;
+      double midpoint = LogLinearHistogram.bucketMidpoint(index);
+      assertTrue(Math.abs(midpoint - value) / value <= 1.0 / 64, "value " + value);
+    }
+  }
+
+  @Test
+  public void testDrain() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    histogram.record(5);
+    histogram.record(5);
+    histogram.record(1_000_000);
+    histogram.record(-1);
+    histogram.record(Long.MAX_VALUE);
+
+    List<Pair<Double, Integer>> centroids = histogram.drain();
+    assertEquals(4, centroids.size());
+    assertEquals(0.0, (double) centroids.get(0)._1);
+    assertEquals(5.0, (double) centroids.get(1)._1);
+    assertEquals(2, (int) centroids.get(1)._2);
+    assertEquals(1_000_000, centroids.get(2)._1, 1_000_000 / 64.0);
+    // values above the max are clamped
+    assertEquals(LogLinearHistogram.MAX_VALUE, centroids.get(3)._1,
+        LogLinearHistogram.MAX_VALUE / 64.0);
+
+    assertTrue(histogram.drain().isEmpty());
+  }
+}
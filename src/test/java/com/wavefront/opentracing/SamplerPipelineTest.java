@@ -0,0 +1,58 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.sdk.entities.tracing.sampling.ConstantSampler;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
+import com.wavefront.sdk.entities.tracing.sampling.RateSampler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SamplerPipeline}.
+ */
+public class SamplerPipelineTest {
+
+  @Test
+  public void testNoSamplers() {
+    SamplerPipeline pipeline = new SamplerPipeline(Collections.emptyList());
+    assertTrue(pipeline.sample("op", 1L, 0));
+    assertTrue(pipeline.sample("op", 1L, 100));
+  }
+
+  @Test
+  public void testEarlyAndLateSamplers() {
+    SamplerPipeline pipeline = new SamplerPipeline(Arrays.asList(
+        new ConstantSampler(false), new DurationSampler(10), new RateSampler(0.0)));
+
+    // only the early samplers decide when a span starts
+    assertFalse(pipeline.sample("op", 1L, 0));
+    assertEquals(1, pipeline.getRejected(0));
+    assertEquals(0, pipeline.getRejected(1));
+    assertEquals(1, pipeline.getRejected(2));
+
+    // only the late samplers decide when a span finishes
+    assertTrue(pipeline.sample("op", 1L, 20));
+    assertFalse(pipeline.sample("op", 1L, 5));
+    assertEquals(1, pipeline.getAccepted(1));
+    assertEquals(1, pipeline.getRejected(1));
+    assertEquals(1, pipeline.getRejected(0));
+  }
+
+  @Test
+  public void testReconfiguredSampler() {
+    ConstantSampler sampler = new ConstantSampler(false);
+    SamplerPipeline pipeline = new SamplerPipeline(Collections.singletonList(sampler));
+    assertFalse(pipeline.sample("op", 1L, 0));
+    // samplers are consulted on every decision
+    sampler.setDecision(true);
+    assertTrue(pipeline.sample("op", 1L, 0));
+    assertEquals(1, pipeline.getAccepted(0));
+    assertEquals(1, pipeline.getRejected(0));
+  }
+}
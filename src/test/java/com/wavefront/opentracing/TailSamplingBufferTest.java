@@ -0,0 +1,170 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.opentracing.sampling.TracePolicies;
+import com.wavefront.sdk.entities.tracing.sampling.ConstantSampler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link TailSamplingBuffer}.
+ */
+public class TailSamplingBufferTest {
+
+  private static class CapturingReporter implements Reporter {
+    private final List<WavefrontSpan> spans = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void report(WavefrontSpan span) {
+      spans.add(span);
+    }
+
+    @Override
+    public int getFailureCount() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private WavefrontTracer.Builder tracerBuilder(Reporter reporter) {
+    // head sampling rejects everything, so only the trace policies keep traces
+    return new WavefrontTracer.Builder(reporter, buildApplicationTags()).
+        withSampler(new ConstantSampler(false));
+  }
+
+  @Test
+  public void testKeepsWholeTraceOnLocalRootFinish() {
+    CapturingReporter reporter = new CapturingReporter();
+    WavefrontTracer tracer = tracerBuilder(reporter).
+        withTailSampling(TracePolicies.anySpanDurationOver(1, TimeUnit.SECONDS)).build();
+
+    Span root = tracer.buildSpan("root").withStartTimestamp(1_000_000).start();
+    tracer.buildSpan("fast").asChildOf(root).withStartTimestamp(1_000_000).start().
+        finish(1_000_010);
+    tracer.buildSpan("slow").asChildOf(root).withStartTimestamp(1_000_000).start().
+        finish(3_000_000);
+    assertTrue(reporter.spans.isEmpty());
+    root.finish(3_000_000);
+    assertEquals(3, reporter.spans.size());
+
+    // a trace matching no policy is discarded as a whole
+    root = tracer.buildSpan("root").withStartTimestamp(1_000_000).start();
+    tracer.buildSpan("fast").asChildOf(root).withStartTimestamp(1_000_000).start().
+        finish(1_000_010);
+    root.finish(1_000_020);
+    assertEquals(3, reporter.spans.size());
+    tracer.close();
+  }
+
+  @Test
+  public void testRootDurationAndErrorPolicies() {
+    CapturingReporter reporter = new CapturingReporter();
+    WavefrontTracer tracer = tracerBuilder(reporter).
+        withTailSampling(TracePolicies.rootDurationOver(1, TimeUnit.SECONDS)).
+        withTailSampling(TracePolicies.anyError()).build();
+
+    // the root of this process is the child of an extracted context
+    WavefrontSpanContext remoteParent = new WavefrontSpanContext(UUID.randomUUID(),
+        UUID.randomUUID());
+    Span root = tracer.buildSpan("root").asChildOf(remoteParent).withStartTimestamp(1_000_000).
+        start();
+    tracer.buildSpan("child").asChildOf(root).start().finish();
+    root.finish(2_000_001);
+    assertEquals(2, reporter.spans.size());
+
+    root = tracer.buildSpan("root").start();
+    Span child = tracer.buildSpan("child").asChildOf(root).start();
+    child.setTag(Tags.ERROR, true);
+    child.finish();
+    root.finish();
+    assertEquals(4, reporter.spans.size());
+    tracer.close();
+  }
+
+  @Test
+  public void testTimeoutAndLateSpans() throws InterruptedException {
+    CapturingReporter reporter = new CapturingReporter();
+    WavefrontTracer tracer = tracerBuilder(reporter).
+        withTailSampling(TracePolicies.anyError()).
+        withTailSamplingTimeoutMillis(50).build();
+
+    Span root = tracer.buildSpan("root").start();
+    Span child = tracer.buildSpan("child").asChildOf(root).start();
+    child.setTag(Tags.ERROR, true);
+    child.finish();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (reporter.spans.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, reporter.spans.size());
+    // the root finishing after the trace timed out follows the decision
+    root.finish();
+    assertEquals(2, reporter.spans.size());
+    tracer.close();
+  }
+
+  @Test
+  public void testDecidedTracesLeaveArrivalOrder() {
+    CapturingReporter reporter = new CapturingReporter();
+    WavefrontTracer tracer = tracerBuilder(reporter).
+        withTailSampling(TracePolicies.anyError()).build();
+
+    // a pending trace at the head of the arrival order
+    Span root = tracer.buildSpan("root").start();
+    tracer.buildSpan("child").asChildOf(root).start().finish();
+    // traces decided behind it
+    for (int i = 0; i < 10; i++) {
+      tracer.buildSpan("other").start().finish();
+    }
+    TailSamplingBuffer buffer = tracer.getTailSamplingBuffer();
+    assertEquals(11, buffer.getArrivalCount());
+    buffer.expire();
+    assertEquals(1, buffer.getArrivalCount());
+    tracer.close();
+  }
+
+  @Test
+  public void testMemoryCeilingEvictsOldestTrace() {
+    CapturingReporter reporter = new CapturingReporter();
+    WavefrontTracer tracer = tracerBuilder(reporter).
+        withTailSampling(TracePolicies.anyError()).
+        withTailSamplingMaxBytes(1).build();
+
+    Span root = tracer.buildSpan("root").start();
+    Span child = tracer.buildSpan("child").asChildOf(root).start();
+    child.setTag(Tags.ERROR, true);
+    child.finish();
+    // evicted right away
+    assertEquals(1, reporter.spans.size());
+    tracer.close();
+  }
+
+  @Test
+  public void testCloseDecidesPendingTraces() {
+    CapturingReporter reporter = new CapturingReporter();
+    WavefrontTracer tracer = tracerBuilder(reporter).
+        withTailSampling(TracePolicies.anyError()).build();
+    Span root = tracer.buildSpan("root").start();
+    Span child = tracer.buildSpan("child").asChildOf(root).start();
+    child.setTag(Tags.ERROR, true);
+    child.finish();
+    assertTrue(reporter.spans.isEmpty());
+    tracer.close();
+    assertEquals(1, reporter.spans.size());
+  }
+}
@@ -0,0 +1,124 @@
+package com.wavefront.opentracing;
+
+import com.wavefront.opentracing.reporting.ConsoleReporter;
+import com.wavefront.opentracing.reporting.Reporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.opentracing.Scope;
+import io.opentracing.Span;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link WavefrontScopeManager}.
+ */
+public class WavefrontScopeManagerTest {
+
+  private final WavefrontTracer tracer = new WavefrontTracer.Builder(
+      new ConsoleReporter(DEFAULT_SOURCE), buildApplicationTags()).
+      withScopeManager(new WavefrontScopeManager()).build();
+
+  @Test
+  public void testNestedActivations() {
+    assertNull(tracer.activeSpan());
+    Span[] spans = new Span[20];
+    Scope[] scopes = new Scope[20];
+    for (int i = 0; i < spans.length; i++) {
+      spans[i] = tracer.buildSpan("op" + i).start();
+      scopes[i] = tracer.activateSpan(spans[i]);
+      assertSame(spans[i], tracer.activeSpan());
+      assertSame(scopes[i], tracer.scopeManager().active());
+    }
+    for (int i = spans.length - 1; i >= 0; i--) {
+      scopes[i].close();
+      assertSame(i == 0 ? null : spans[i - 1], tracer.activeSpan());
+    }
+  }
+
+  @Test
+  public void testChildOfActiveSpan() {
+    try (Scope scope = tracer.buildSpan("parent").startActive(true)) {
+      WavefrontSpan child = (WavefrontSpan) tracer.buildSpan("child").start();
+      assertEquals(((WavefrontSpan) scope.span()).context().getSpanId(),
+          child.getParents().get(0).getSpanContext().getSpanId());
+    }
+    assertNull(tracer.activeSpan());
+  }
+
+  @Test
+  public void testScopesAreReused() {
+    Scope first = tracer.activateSpan(tracer.buildSpan("op").start());
+    first.close();
+    Span span = tracer.buildSpan("op").start();
+    Scope second = tracer.activateSpan(span);
+    assertSame(first, second);
+    assertSame(span, second.span());
+    second.close();
+  }
+
+  @Test
+  public void testMisorderedCloseIsIgnored() {
+    Span outer = tracer.buildSpan("outer").start();
+    Span inner = tracer.buildSpan("inner").start();
+    Scope outerScope = tracer.activateSpan(outer);
+    Scope innerScope = tracer.activateSpan(inner);
+
+    outerScope.close();
+    assertSame(inner, tracer.activeSpan());
+    innerScope.close();
+    // closing twice is ignored as well
+    innerScope.close();
+    assertSame(outer, tracer.activeSpan());
+    outerScope.close();
+    assertNull(tracer.activeSpan());
+  }
+
+  @Test
+  public void testCloseFromOtherThreadIsIgnored() throws InterruptedException {
+    Span span = tracer.buildSpan("op").start();
+    Scope scope = tracer.activateSpan(span);
+    Thread thread = new Thread(scope::close);
+    thread.start();
+    thread.join();
+    assertSame(span, tracer.activeSpan());
+    scope.close();
+    assertNull(tracer.activeSpan());
+  }
+
+  @Test
+  public void testFinishOnClose() {
+    List<WavefrontSpan> reported = new ArrayList<>();
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new Reporter() {
+      @Override
+      public void report(WavefrontSpan span) {
+        reported.add(span);
+      }
+
+      @Override
+      public int getFailureCount() {
+        return 0;
+      }
+
+      @Override
+      public void close() {
+      }
+    }, buildApplicationTags()).withScopeManager(new WavefrontScopeManager()).build();
+
+    Span span = tracer.buildSpan("op").start();
+    tracer.scopeManager().activate(span, false).close();
+    assertTrue(reported.isEmpty());
+    tracer.scopeManager().activate(span, true).close();
+    assertEquals(1, reported.size());
+    assertSame(span, reported.get(0));
+    assertNull(tracer.activeSpan());
+  }
+}
@@ -1,18 +1,25 @@
 package com.wavefront.opentracing;
 
+import com.wavefront.opentracing.id.RandomIdGenerator;
 import com.wavefront.opentracing.reporting.ConsoleReporter;
 import com.wavefront.sdk.common.Constants;
+import com.wavefront.sdk.common.Pair;
 import com.wavefront.sdk.common.application.ApplicationTags;
 import com.wavefront.sdk.entities.tracing.sampling.ConstantSampler;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import io.opentracing.References;
 import io.opentracing.Scope;
 import io.opentracing.Span;
+import io.opentracing.Tracer;
 import io.opentracing.tag.Tags;
 
 import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
@@ -20,6 +27,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class WavefrontSpanBuilderTest {
@@ -68,6 +76,38 @@ public class WavefrontSpanBuilderTest {
     assertEquals(1, span.getTagsAsMap().get(Constants.APPLICATION_TAG_KEY).size());
     assertTrue(span.getTagsAsMap().get(Constants.APPLICATION_TAG_KEY).contains("yourApplication"));
     assertEquals("yourApplication", span.getSingleValuedTagValue(Constants.APPLICATION_TAG_KEY));
+    // the global application tag is hidden, not reported alongside the span's own value
+    List<Pair<String, String>> tags = span.getTagsAsList();
+    assertEquals(6, tags.size());
+    List<Pair<String, String>> iterated = new ArrayList<>();
+    for (Pair<String, String> tag : tags) {
+      iterated.add(tag);
+    }
+    for (int i = 0; i < tags.size(); i++) {
+      assertEquals(tags.get(i), iterated.get(i));
+    }
+    assertFalse(iterated.contains(Pair.of(Constants.APPLICATION_TAG_KEY, "myApplication")));
+  }
+
+  @Test
+  public void testTypedTagValues() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).build();
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("testOp").start();
+    span.setTag("http.status_code", 200);
+    span.setTag("latency", 1.5f);
+    span.setTag("retry", true);
+    span.setTag(Constants.SERVICE_TAG_KEY, "yourService");
+    span.setTag(Constants.SERVICE_TAG_KEY, "theirService");
+
+    Map<String, Collection<String>> tags = span.getTagsAsMap();
+    assertEquals("200", tags.get("http.status_code").iterator().next());
+    assertEquals("1.5", tags.get("latency").iterator().next());
+    assertEquals("true", tags.get("retry").iterator().next());
+    assertEquals(1, tags.get(Constants.SERVICE_TAG_KEY).size());
+    assertEquals("theirService", span.getSingleValuedTagValue(Constants.SERVICE_TAG_KEY));
+    assertEquals(tags.values().stream().mapToInt(Collection::size).sum(),
+        span.getTagsAsList().size());
   }
 
   @Test
@@ -223,4 +263,82 @@ public class WavefrontSpanBuilderTest {
     assertNotNull(span.context().getBaggage());
     assertTrue(span.context().getBaggage().isEmpty());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void test64BitSpanIds() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).
+        withIdGenerator(new RandomIdGenerator(true)).
+        build();
+
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("testOp").start();
+    assertEquals(0, span.context().getSpanId().getMostSignificantBits());
+    assertNotEquals(0, span.context().getSpanId().getLeastSignificantBits());
+    // trace ids remain 128-bit, version 4 UUIDs
+    assertEquals(4, span.context().getTraceId().version());
+
+    WavefrontSpan childSpan = (WavefrontSpan) tracer.buildSpan("childOp").asChildOf(span).start();
+    assertEquals(span.context().getTraceId(), childSpan.context().getTraceId());
+    assertEquals(0, childSpan.context().getSpanId().getMostSignificantBits());
+    assertNotEquals(span.context().getSpanId(), childSpan.context().getSpanId());
+  }
+
+  @Test
+  public void testParents() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).build();
+    WavefrontSpan parent1 = (WavefrontSpan) tracer.buildSpan("parent1").start();
+    WavefrontSpan parent2 = (WavefrontSpan) tracer.buildSpan("parent2").start();
+
+    WavefrontSpan child = (WavefrontSpan) tracer.buildSpan("child").asChildOf(parent1).start();
+    assertEquals(1, child.getParents().size());
+    assertEquals(parent1.context(), child.getParents().get(0).getSpanContext());
+    assertEquals(References.CHILD_OF, child.getParents().get(0).getType());
+
+    child = (WavefrontSpan) tracer.buildSpan("child").asChildOf(parent1).asChildOf(parent2).
+        start();
+    assertEquals(2, child.getParents().size());
+    assertEquals(parent1.context(), child.getParents().get(0).getSpanContext());
+    assertEquals(parent2.context(), child.getParents().get(1).getSpanContext());
+    assertEquals(parent1.context().getTraceId(), child.context().getTraceId());
+  }
+
+  @Test
+  public void testReusedBuilder() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).build();
+    Tracer.SpanBuilder builder = tracer.buildSpan("testOp").withTag("key1", "value1");
+    WavefrontSpan span1 = (WavefrontSpan) builder.start();
+    builder.withTag("key2", "value2");
+    WavefrontSpan span2 = (WavefrontSpan) builder.start();
+    span1.setTag("key3", "value3");
+
+    assertTrue(span1.getTagsAsMap().containsKey("key1"));
+    assertFalse(span1.getTagsAsMap().containsKey("key2"));
+    assertTrue(span2.getTagsAsMap().containsKey("key1"));
+    assertTrue(span2.getTagsAsMap().containsKey("key2"));
+    assertFalse(span2.getTagsAsMap().containsKey("key3"));
+  }
+
+  @Test
+  public void testNullIdGenerator() {
+    assertThrows(IllegalArgumentException.class, () -> new WavefrontTracer.Builder(
+        new ConsoleReporter(DEFAULT_SOURCE), buildApplicationTags()).withIdGenerator(null));
+  }
+
+  @Test
+  public void testTagListIsSnapshot() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).build();
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("testOp").
+        withTag(Constants.SERVICE_TAG_KEY, "service1").withTag("key1", "value1").start();
+    List<Pair<String, String>> tags = span.getTagsAsList();
+    int size = tags.size();
+    span.setTag(Constants.SERVICE_TAG_KEY, "service2");
+    span.setTag("key2", "value2");
+    assertEquals(size, tags.size());
+    assertTrue(tags.contains(Pair.of(Constants.SERVICE_TAG_KEY, "service1")));
+    assertFalse(tags.contains(Pair.of(Constants.SERVICE_TAG_KEY, "service2")));
+    assertTrue(span.getTagsAsList().contains(Pair.of(Constants.SERVICE_TAG_KEY, "service2")));
+  }
+}
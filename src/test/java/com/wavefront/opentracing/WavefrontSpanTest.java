@@ -1,8 +1,12 @@
 package com.wavefront.opentracing;
 
+import com.wavefront.opentracing.reporting.ConsoleReporter;
 import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.sdk.common.Pair;
 import com.wavefront.sdk.common.WavefrontSender;
 import com.wavefront.sdk.entities.histograms.HistogramGranularity;
+import com.wavefront.sdk.entities.tracing.sampling.ConstantSampler;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
 
 import org.junit.jupiter.api.Test;
 
@@ -11,6 +15,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import io.opentracing.tag.Tags;
@@ -24,6 +30,9 @@ import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * WavefrontSpanTest to test spans, generated metrics and component heartbeat.
@@ -118,6 +127,65 @@ public class WavefrontSpanTest {
     verify(wfSender);
   }
 
+  @Test
+  public void testSpanLogs() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).withMaxSpanLogs(2).build();
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("dummyOp").start();
+    Map<String, Object> fields = new LinkedHashMap<>();
+    fields.put("event", "error");
+    fields.put("error.object", new IllegalStateException("invalid state"));
+    fields.put("retries", 3);
+    span.log(1000L, fields);
+    span.log(2000L, "retrying");
+    span.log("dropped");
+    span.finish();
+    span.log("after finish");
+
+    List<Pair<Long, Map<String, String>>> logs = span.getLogsAsList();
+    assertEquals(2, logs.size());
+    assertEquals(Long.valueOf(1000L), logs.get(0)._1);
+    assertEquals("error", logs.get(0)._2.get("event"));
+    assertEquals("java.lang.IllegalStateException: invalid state",
+        logs.get(0)._2.get("error.object"));
+    assertEquals("3", logs.get(0)._2.get("retries"));
+    assertEquals("java.lang.IllegalStateException", logs.get(0)._2.get("error.kind"));
+    assertTrue(logs.get(0)._2.get("stack").contains("at " + getClass().getName()));
+    assertEquals(Long.valueOf(2000L), logs.get(1)._1);
+    assertEquals(Collections.singletonMap("event", "retrying"), logs.get(1)._2);
+    assertEquals(2, span.getSpanLogs().size());
+  }
+
+  @Test
+  public void testUnsampledSpanLogs() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).withSampler(new ConstantSampler(false)).build();
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("dummyOp").start();
+    span.log("not recorded");
+    assertTrue(span.getLogsAsList().isEmpty());
+    assertNull(span.getSpanLogs());
+
+    // the span may still be sampled by a late sampler when it finishes
+    tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).withSampler(new ConstantSampler(false)).
+        withSampler(new DurationSampler(1000)).build();
+    span = (WavefrontSpan) tracer.buildSpan("dummyOp").start();
+    span.log("recorded");
+    assertEquals(1, span.getLogsAsList().size());
+
+    // a span with a sampling.priority of 0 is never sampled late
+    span = (WavefrontSpan) tracer.buildSpan("dummyOp").
+        withTag(Tags.SAMPLING_PRIORITY.getKey(), 0).start();
+    span.log("not recorded");
+    assertTrue(span.getLogsAsList().isEmpty());
+
+    tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).withMaxSpanLogs(0).build();
+    span = (WavefrontSpan) tracer.buildSpan("dummyOp").start();
+    span.log("not recorded");
+    assertTrue(span.getLogsAsList().isEmpty());
+  }
+
   private Map<String, String> pointTags(String operationName) {
     return new HashMap<String, String>() {{
       put("application", "myApplication");
@@ -1,12 +1,22 @@
 package com.wavefront.opentracing;
 
+import com.wavefront.opentracing.clock.Clock;
 import com.wavefront.opentracing.reporting.ConsoleReporter;
+import com.wavefront.opentracing.reporting.Reporter;
+import com.wavefront.opentracing.reporting.WavefrontSpanReporter;
+import com.wavefront.sdk.common.WavefrontSender;
 import com.wavefront.sdk.entities.tracing.sampling.ConstantSampler;
+import com.wavefront.sdk.entities.tracing.sampling.DurationSampler;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.opentracing.Scope;
 import io.opentracing.Span;
@@ -16,9 +26,16 @@ import io.opentracing.propagation.TextMapAdapter;
 
 import static com.wavefront.opentracing.Utils.buildApplicationTags;
 import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class WavefrontTracerTest {
@@ -49,6 +66,38 @@ public class WavefrontTracerTest {
     assertTrue(ctx.getSamplingDecision());
   }
 
+  @Test
+  public void testExtractMixedCaseHeaders() {
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).build();
+    UUID traceId = UUID.randomUUID();
+    UUID spanId = UUID.randomUUID();
+
+    Map<String, String> map = new HashMap<>();
+    map.put("Content-Type", "application/json");
+    map.put("W", "short");
+    map.put("wf-other", "unrelated");
+    map.put("WF-OT-TraceId", traceId.toString().toUpperCase());
+    map.put("Wf-Ot-SpanId", spanId.toString());
+    map.put("wf-ot-Sample", "TRUE");
+    map.put("WF-OT-Customer", "testCustomer");
+    WavefrontSpanContext ctx = (WavefrontSpanContext) tracer.extract(Format.Builtin.TEXT_MAP,
+        new TextMapAdapter(map));
+
+    assertEquals(traceId, ctx.getTraceId());
+    assertEquals(spanId, ctx.getSpanId());
+    assertTrue(ctx.getSamplingDecision());
+    assertEquals("testCustomer", ctx.getBaggageItem("customer"));
+    int baggageCount = 0;
+    for (Map.Entry<String, String> ignored : ctx.baggageItems()) {
+      baggageCount++;
+    }
+    assertEquals(1, baggageCount);
+
+    map.remove("Wf-Ot-SpanId");
+    assertNull(tracer.extract(Format.Builtin.TEXT_MAP, new TextMapAdapter(map)));
+  }
+
   @Test
   public void testSampling() {
     WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
@@ -64,6 +113,113 @@ public class WavefrontTracerTest {
     assertFalse(tracer.sample("testOp", 1L, 0));
   }
 
+  @Test
+  public void testClock() {
+    AtomicLong nanos = new AtomicLong(0);
+    Clock clock = new Clock() {
+      @Override
+      public long currentTimeMicros() {
+        return 1_000_000_000_000L + nanos.get() / 1000;
+      }
+
+      @Override
+      public long nanoTime() {
+        return nanos.get();
+      }
+    };
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).withClock(clock).build();
+
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("testOp").start();
+    nanos.addAndGet(1_234_567);
+    span.finish();
+    assertEquals(1_000_000_000_000L, span.getStartTimeMicros());
+    assertEquals(1234, span.getDurationMicroseconds());
+
+    // spans with explicit start timestamps are finished with the clock's timestamp
+    span = (WavefrontSpan) tracer.buildSpan("testOp").
+        withStartTimestamp(tracer.currentTimeMicros() - 10).start();
+    span.finish();
+    assertEquals(10, span.getDurationMicroseconds());
+  }
+
+  @Test
+  public void testAsyncFinish() {
+    List<WavefrontSpan> reported = new CopyOnWriteArrayList<>();
+    Reporter reporter = new Reporter() {
+      @Override
+      public void report(WavefrontSpan span) {
+        reported.add(span);
+      }
+
+      @Override
+      public int getFailureCount() {
+        return 0;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    WavefrontTracer tracer = new WavefrontTracer.Builder(reporter, buildApplicationTags()).
+        withSampler(new DurationSampler(5)).
+        withAsyncFinish(2, 4).
+        build();
+
+    for (int i = 0; i < 100; i++) {
+      // spans lasting 10ms are sampled late, spans lasting 1ms are not
+      long duration = i % 2 == 0 ? 10_000 : 1_000;
+      tracer.buildSpan("testOp" + i).withStartTimestamp(1_000_000).start().
+          finish(1_000_000 + duration);
+    }
+    tracer.close();
+
+    // queued spans are processed on close, and spans that did not fit were processed inline
+    assertEquals(50, reported.size());
+    for (WavefrontSpan span : reported) {
+      assertEquals(10_000, span.getDurationMicroseconds());
+      assertTrue(span.context().getSamplingDecision());
+    }
+  }
+
+  @Test
+  public void testShedTraceNotSampledLate() {
+    List<WavefrontSpan> reported = new CopyOnWriteArrayList<>();
+    Reporter reporter = new Reporter() {
+      @Override
+      public void report(WavefrontSpan span) {
+        reported.add(span);
+      }
+
+      @Override
+      public int getFailureCount() {
+        return 0;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    WavefrontTracer tracer = new WavefrontTracer.Builder(reporter, buildApplicationTags()).
+        withSampler(new DurationSampler(5)).
+        build();
+    WavefrontSpanContext unsampled = new WavefrontSpanContext(UUID.randomUUID(),
+        UUID.randomUUID(), null, Boolean.FALSE);
+
+    // a span that was not sampled when it started is sampled late
+    tracer.buildSpan("testOp").asChildOf(unsampled).withStartTimestamp(1_000_000).start().
+        finish(1_010_000);
+    assertEquals(1, reported.size());
+
+    // unless load shedding dropped its trace, which its children inherit
+    WavefrontSpan child = (WavefrontSpan) tracer.buildSpan("testOp").
+        asChildOf(unsampled.withShedDecision()).withStartTimestamp(1_000_000).start();
+    assertTrue(child.context().isShed());
+    child.finish(1_010_000);
+    assertEquals(1, reported.size());
+    assertFalse(child.context().getSamplingDecision());
+  }
+
   @Test
   public void testActiveSpan() {
     WavefrontTracer tracer = new WavefrontTracer.Builder(
@@ -115,4 +271,31 @@ public class WavefrontTracerTest {
     assertTrue(span.getTagsAsMap().get("key1").contains("value1"));
     assertTrue(span.getTagsAsMap().get("key1").contains("value2"));
   }
+
+  @Test
+  public void testDerivedMetricsSentOnClose() throws IOException {
+    List<String> calls = new CopyOnWriteArrayList<>();
+    WavefrontSender sender = createNiceMock(WavefrontSender.class);
+    sender.sendDistribution(eq("tracing.derived.myApplication.myService.testOp.duration.micros"),
+        anyObject(), anyObject(), anyLong(), anyObject(), anyObject());
+    expectLastCall().andAnswer(() -> {
+      calls.add("distribution");
+      return null;
+    }).anyTimes();
+    sender.close();
+    expectLastCall().andAnswer(() -> {
+      calls.add("close");
+      return null;
+    }).anyTimes();
+    replay(sender);
+    WavefrontTracer tracer = new WavefrontTracer.Builder(
+        new WavefrontSpanReporter.Builder().withSource(DEFAULT_SOURCE).build(sender),
+        buildApplicationTags()).build();
+    tracer.buildSpan("testOp").start().finish();
+
+    // the durations of the current minute are sent before the sender is closed
+    tracer.close();
+    assertEquals("distribution", calls.get(0));
+    assertEquals("close", calls.get(calls.size() - 1));
+  }
 }
@@ -0,0 +1,70 @@
+package com.wavefront.opentracing.clock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link AnchoredClock} and {@link CoarseClock}.
+ */
+public class AnchoredClockTest {
+
+  private final AtomicLong wallMillis = new AtomicLong(1_000_000L);
+  private final AtomicLong nanos = new AtomicLong(5_000_000_000L);
+
+  private AnchoredClock newClock() {
+    // the millisecond ticks over while the clock is anchored
+    AtomicLong reads = new AtomicLong();
+    return new AnchoredClock(() -> reads.incrementAndGet() > 1 ? wallMillis.get() + 1 :
+        wallMillis.get(), nanos::get);
+  }
+
+  @Test
+  public void testMicrosecondResolution() {
+    AnchoredClock clock = newClock();
+    long start = clock.currentTimeMicros();
+    assertEquals(TimeUnit.MILLISECONDS.toMicros(wallMillis.get() + 1), start);
+    nanos.addAndGet(1_500);
+    assertEquals(start + 1, clock.currentTimeMicros());
+    nanos.addAndGet(250_000);
+    assertEquals(start + 251, clock.currentTimeMicros());
+    assertEquals(nanos.get(), clock.nanoTime());
+  }
+
+  @Test
+  public void testReanchorsOnDrift() {
+    AnchoredClock clock = newClock();
+    long start = clock.currentTimeMicros();
+
+    // the wall clock keeps pace: no re-anchoring
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    wallMillis.addAndGet(1000);
+    assertEquals(start + 1_000_000, clock.currentTimeMicros());
+
+    // the wall clock was set forward by 5 seconds
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    wallMillis.addAndGet(6000);
+    long micros = clock.currentTimeMicros();
+    // the middle of the current wall-clock millisecond
+    assertEquals(TimeUnit.MILLISECONDS.toMicros(wallMillis.get() + 1) + 500, micros);
+    nanos.addAndGet(10_000);
+    assertEquals(micros + 10, clock.currentTimeMicros());
+  }
+
+  @Test
+  public void testCoarseClock() throws Exception {
+    try (CoarseClock clock = new CoarseClock(1000)) {
+      long micros = clock.currentTimeMicros();
+      long nanoTime = clock.nanoTime();
+      assertTrue(Math.abs(micros - TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis())) <
+          TimeUnit.SECONDS.toMicros(1));
+      Thread.sleep(20);
+      assertTrue(clock.currentTimeMicros() > micros);
+      assertTrue(clock.nanoTime() > nanoTime);
+    }
+  }
+}
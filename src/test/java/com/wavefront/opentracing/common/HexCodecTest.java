@@ -0,0 +1,96 @@
+package com.wavefront.opentracing.common;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link HexCodec}.
+ */
+public class HexCodecTest {
+
+  @Test
+  public void testToUuidString() {
+    long[] values = {0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 0x123e4567e89b42d3L,
+        0xa456556642440000L};
+    for (long high : values) {
+      for (long low : values) {
+        assertEquals(new UUID(high, low).toString(), HexCodec.toUuidString(high, low));
+      }
+    }
+    for (int i = 0; i < 100; i++) {
+      UUID uuid = UUID.randomUUID();
+      assertEquals(uuid.toString(), HexCodec.toUuidString(uuid.getMostSignificantBits(),
+          uuid.getLeastSignificantBits()));
+    }
+  }
+
+  @Test
+  public void testParseUuid() {
+    for (int i = 0; i < 100; i++) {
+      UUID uuid = UUID.randomUUID();
+      for (String s : new String[]{uuid.toString(), uuid.toString().toUpperCase()}) {
+        assertTrue(HexCodec.isCanonicalUuidString(s));
+        assertEquals(uuid.getMostSignificantBits(), HexCodec.parseUuidHigh(s));
+        assertEquals(uuid.getLeastSignificantBits(), HexCodec.parseUuidLow(s));
+      }
+    }
+    assertFalse(HexCodec.isCanonicalUuidString("1-2-3-4-5"));
+    assertFalse(HexCodec.isCanonicalUuidString("123e4567e89b42d3a456556642440000"));
+    assertThrows(IllegalArgumentException.class,
+        () -> HexCodec.parseUuidLow("123e4567-e89b-42d3-a456-55664244000g"));
+    assertThrows(IllegalArgumentException.class,
+        () -> HexCodec.parseUuidHigh("123e4567-e89b-+2d3-a456-556642440000"));
+  }
+
+  @Test
+  public void testLowerHex() {
+    long[] values = {0L, 1L, 0xfL, 0x10L, -1L, Long.MIN_VALUE, Long.MAX_VALUE,
+        0x123e4567e89b42d3L};
+    for (long high : values) {
+      for (long low : values) {
+        ByteBuffer bb = ByteBuffer.allocate(16).putLong(high).putLong(low);
+        String expected = new BigInteger(1, bb.array()).toString(16);
+        char[] chars = new char[HexCodec.lowerHexLength(high, low) + 1];
+        chars[0] = ':';
+        assertEquals(chars.length, HexCodec.writeLowerHex(high, low, chars, 1));
+        assertEquals(":" + expected, new String(chars));
+
+        assertEquals(low, HexCodec.parseHexLong(expected, Math.max(0, expected.length() - 16),
+            expected.length()));
+      }
+    }
+    // only the lowest 64 bits are kept
+    assertEquals(0x123456789abcdef0L, HexCodec.parseHexLong("ff123456789abcdef0", 0, 18));
+    assertThrows(NumberFormatException.class, () -> HexCodec.parseHexLong("abc", 1, 1));
+    assertThrows(NumberFormatException.class, () -> HexCodec.parseHexLong("-1", 0, 2));
+  }
+
+  @Test
+  public void testSpanContextIdViews() {
+    UUID traceId = UUID.randomUUID();
+    UUID spanId = UUID.randomUUID();
+    WavefrontSpanContext ctx = new WavefrontSpanContext(traceId.getMostSignificantBits(),
+        traceId.getLeastSignificantBits(), spanId.getMostSignificantBits(),
+        spanId.getLeastSignificantBits(), null, null);
+    assertEquals(traceId, ctx.getTraceId());
+    assertEquals(spanId, ctx.getSpanId());
+    assertEquals(traceId.toString(), ctx.toTraceId());
+    assertEquals(spanId.toString(), ctx.toSpanId());
+    // views are cached and carried over to derived contexts
+    assertSame(ctx.toTraceId(), ctx.toTraceId());
+    assertSame(ctx.getTraceId(), ctx.withBaggageItem("foo", "bar").getTraceId());
+    assertEquals(traceId.getLeastSignificantBits(), ctx.getTraceIdLow());
+    assertEquals(spanId.getMostSignificantBits(), ctx.getSpanIdHigh());
+  }
+}
@@ -0,0 +1,138 @@
+package com.wavefront.opentracing.concurrent;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.Reporter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Scope;
+import io.opentracing.Span;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static com.wavefront.opentracing.concurrent.TracedTask.QUEUE_WAIT_OPERATION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link TracedExecutorService}, {@link TracedScheduledExecutorService} and
+ * {@link TracedCompletableFutures}.
+ */
+public class TracedExecutorServiceTest {
+
+  private final List<WavefrontSpan> reported = new CopyOnWriteArrayList<>();
+  private final WavefrontTracer tracer = new WavefrontTracer.Builder(new Reporter() {
+    @Override
+    public void report(WavefrontSpan span) {
+      reported.add(span);
+    }
+
+    @Override
+    public int getFailureCount() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+  }, buildApplicationTags()).build();
+  private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+
+  @AfterEach
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testActiveSpanIsPropagated() throws Exception {
+    TracedExecutorService traced = new TracedExecutorService(executor, tracer);
+    Span span = tracer.buildSpan("parent").start();
+    Future<Span> future;
+    List<Future<Span>> futures;
+    try (Scope scope = tracer.activateSpan(span)) {
+      future = traced.submit(tracer::activeSpan);
+      futures = traced.invokeAll(Arrays.asList(tracer::activeSpan, tracer::activeSpan));
+    }
+    assertSame(span, future.get());
+    for (Future<Span> f : futures) {
+      assertSame(span, f.get());
+    }
+    assertNull(traced.submit(tracer::activeSpan).get());
+  }
+
+  @Test
+  public void testTaskIsNotWrappedWithoutActiveSpan() {
+    TracedExecutorService traced = new TracedExecutorService(executor, tracer);
+    Runnable task = () -> { };
+    assertSame(task, traced.wrap(task, true));
+  }
+
+  @Test
+  public void testQueueWait() throws Exception {
+    TracedExecutorService traced = new TracedExecutorService(executor, tracer, true);
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("parent").start();
+    Map<String, Collection<String>> tags = span.getTagsAsMap();
+    try (Scope scope = tracer.activateSpan(span)) {
+      traced.submit(() -> { }).get();
+      traced.submit(() -> { }).get();
+    }
+    // each task waited on a child span of its own, the parent is left unchanged
+    assertEquals(2, reported.size());
+    for (WavefrontSpan waitSpan : reported) {
+      assertEquals(QUEUE_WAIT_OPERATION, waitSpan.getOperationName());
+      assertEquals(span.context().getSpanId(),
+          waitSpan.getParents().get(0).getSpanContext().getSpanId());
+    }
+    assertEquals(tags, span.getTagsAsMap());
+
+    reported.clear();
+    try (Scope scope = tracer.activateSpan(span)) {
+      new TracedExecutorService(executor, tracer).submit(() -> { }).get();
+    }
+    assertTrue(reported.isEmpty());
+  }
+
+  @Test
+  public void testScheduledTasks() throws Exception {
+    TracedScheduledExecutorService traced =
+        new TracedScheduledExecutorService(executor, tracer, true);
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("parent").start();
+    Future<Span> future;
+    try (Scope scope = tracer.activateSpan(span)) {
+      future = traced.schedule(tracer::activeSpan, 10, TimeUnit.MILLISECONDS);
+    }
+    assertSame(span, future.get());
+    // the delay of a scheduled task is not a queue wait
+    assertTrue(reported.isEmpty());
+  }
+
+  @Test
+  public void testCompletableFutureChain() throws Exception {
+    Span span = tracer.buildSpan("parent").start();
+    CompletableFuture<Span[]> future;
+    try (Scope scope = tracer.activateSpan(span)) {
+      future = TracedCompletableFutures.supplyAsync(tracer, tracer::activeSpan, executor).
+          thenApplyAsync(TracedCompletableFutures.function(tracer,
+              first -> new Span[] {first, tracer.activeSpan()}), executor);
+    }
+    Span[] spans = future.get();
+    assertEquals(2, spans.length);
+    assertSame(span, spans[0]);
+    assertSame(span, spans[1]);
+  }
+}
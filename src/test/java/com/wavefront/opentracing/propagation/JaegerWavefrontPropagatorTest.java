@@ -0,0 +1,77 @@
+package com.wavefront.opentracing.propagation;
+
+import com.wavefront.opentracing.WavefrontSpanContext;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import io.opentracing.propagation.TextMapAdapter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link JaegerWavefrontPropagator}.
+ */
+public class JaegerWavefrontPropagatorTest {
+
+  private final JaegerWavefrontPropagator propagator = JaegerWavefrontPropagator.builder().
+      withTraceIdHeader("uber-trace-id").withBaggagePrefix("uberctx-").build();
+
+  @Test
+  public void testExtract() {
+    Map<String, String> headers = new HashMap<>();
+    headers.put("Uber-Trace-Id", "3871de7e09c53ae8:7499dd16d98ab60e:3771de7e09c55ae8:1");
+    headers.put("UberCtx-Customer", "testCustomer");
+    headers.put("Content-Type", "application/json");
+    WavefrontSpanContext ctx = propagator.extract(new TextMapAdapter(headers));
+
+    assertEquals(new UUID(0, 0x3871de7e09c53ae8L), ctx.getTraceId());
+    assertEquals(new UUID(0, 0x7499dd16d98ab60eL), ctx.getSpanId());
+    assertEquals("3771de7e09c55ae8", ctx.getBaggageItem("parent-id"));
+    assertEquals("testCustomer", ctx.getBaggageItem("Customer"));
+    assertTrue(ctx.getSamplingDecision());
+
+    // 128-bit trace id, short span id, unsampled
+    headers.put("Uber-Trace-Id", "463ac35c9f6413ad48485a3953bb6124:1f:0:0");
+    ctx = propagator.extract(new TextMapAdapter(headers));
+    assertEquals(new UUID(0x463ac35c9f6413adL, 0x48485a3953bb6124L), ctx.getTraceId());
+    assertEquals(new UUID(0, 0x1f), ctx.getSpanId());
+    assertFalse(ctx.getSamplingDecision());
+  }
+
+  @Test
+  public void testExtractMalformedHeader() {
+    for (String value : new String[]{"", ":1:0:1", "1:2:3", "1:2:3:", "1:2:3:4:5"}) {
+      Map<String, String> headers = new HashMap<>();
+      headers.put("uber-trace-id", value);
+      assertNull(propagator.extract(new TextMapAdapter(headers)), value);
+    }
+    Map<String, String> headers = new HashMap<>();
+    headers.put("uber-trace-id", "xyz:1:0:1");
+    assertThrows(NumberFormatException.class,
+        () -> propagator.extract(new TextMapAdapter(headers)));
+  }
+
+  @Test
+  public void testInjectExtract() {
+    WavefrontSpanContext ctx = new WavefrontSpanContext(0x463ac35c9f6413adL, 0x0000000000000abcL,
+        0, 0x7499dd16d98ab60eL, null, Boolean.TRUE).withBaggageItem("parent-id", "ef");
+    Map<String, String> headers = new HashMap<>();
+    propagator.inject(ctx, new TextMapAdapter(headers));
+    assertEquals("463ac35c9f6413ad0000000000000abc:7499dd16d98ab60e:ef:1",
+        headers.get("uber-trace-id"));
+
+    WavefrontSpanContext extracted = propagator.extract(new TextMapAdapter(headers));
+    assertEquals(ctx.getTraceId(), extracted.getTraceId());
+    assertEquals(ctx.getSpanId(), extracted.getSpanId());
+    assertEquals("ef", extracted.getBaggageItem("parent-id"));
+    assertTrue(extracted.getSamplingDecision());
+  }
+}
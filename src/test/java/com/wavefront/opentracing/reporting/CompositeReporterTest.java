@@ -0,0 +1,142 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link CompositeReporter}.
+ */
+public class CompositeReporterTest {
+
+  private final WavefrontTracer tracer = new WavefrontTracer.Builder(
+      new ConsoleReporter(DEFAULT_SOURCE), buildApplicationTags()).build();
+
+  @Test
+  public void testSlowAndFailingReporters() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CollectingReporter slow = new CollectingReporter() {
+      @Override
+      public void report(WavefrontSpan span) throws IOException {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.report(span);
+      }
+    };
+    CollectingReporter failing = new CollectingReporter() {
+      @Override
+      public void report(WavefrontSpan span) throws IOException {
+        throw new IOException("unavailable");
+      }
+    };
+    CollectingReporter fast = new CollectingReporter();
+    CompositeReporter reporter = new CompositeReporter(2, slow, failing, fast);
+
+    // the slow reporter holds one span and queues two, the others keep up
+    for (int i = 0; i < 5; i++) {
+      reporter.report(newSpan());
+      Thread.sleep(20);
+    }
+    for (int i = 0; i < 100 && (fast.spans.size() < 5 || reporter.getFailureCounts().get(1) < 5);
+         i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(5, fast.spans.size());
+    assertTrue(reporter.getFailureCounts().get(0) >= 2);
+    assertEquals(5, (int) reporter.getFailureCounts().get(1));
+    assertEquals(0, (int) reporter.getFailureCounts().get(2));
+    assertEquals(reporter.getFailureCounts().get(0) + 5, reporter.getFailureCount());
+
+    // closing reports the queued spans
+    release.countDown();
+    reporter.close();
+    assertEquals(5 - reporter.getFailureCounts().get(0), slow.spans.size());
+    assertTrue(slow.closed && failing.closed && fast.closed);
+  }
+
+  @Test
+  public void testCloseWithStuckReporter() throws Exception {
+    CountDownLatch reporting = new CountDownLatch(1);
+    CollectingReporter stuck = new CollectingReporter() {
+      @Override
+      public void report(WavefrontSpan span) throws IOException {
+        reporting.countDown();
+        try {
+          new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (closed) {
+          throw new IllegalStateException("closed while reporting");
+        }
+        super.report(span);
+      }
+    };
+    CompositeReporter reporter = new CompositeReporter(2, stuck);
+    reporter.report(newSpan());
+    reporting.await();
+    reporter.report(newSpan());
+
+    // the worker is interrupted after the deadline and closes the reporter once it returns
+    reporter.close();
+    for (int i = 0; i < 100 && !stuck.closed; i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(stuck.closed);
+    assertEquals(1, stuck.spans.size());
+    assertEquals(1, reporter.getFailureCount());
+  }
+
+  @Test
+  public void testSynchronousReporters() throws IOException {
+    CollectingReporter first = new CollectingReporter();
+    CollectingReporter second = new CollectingReporter();
+    CompositeReporter reporter = new CompositeReporter(first, second);
+    WavefrontSpan span = newSpan();
+    reporter.report(span);
+    assertEquals(Arrays.asList(span), first.spans);
+    assertEquals(Arrays.asList(span), second.spans);
+    assertEquals(Arrays.asList(0, 0), reporter.getFailureCounts());
+  }
+
+  private WavefrontSpan newSpan() {
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan("testOp").start();
+    span.finish();
+    return span;
+  }
+
+  private static class CollectingReporter implements Reporter {
+    final List<WavefrontSpan> spans = new CopyOnWriteArrayList<>();
+    volatile boolean closed = false;
+
+    @Override
+    public void report(WavefrontSpan span) throws IOException {
+      spans.add(span);
+    }
+
+    @Override
+    public int getFailureCount() {
+      return 0;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontSpanContext;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.Pair;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link DiskSpillBuffer}.
+ */
+public class DiskSpillBufferTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  private File directory;
+  private WavefrontTracer tracer;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("spill").toFile();
+    tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).excludeJvmMetrics().build();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  private byte[] record(String operationName) {
+    WavefrontSpan span = (WavefrontSpan) tracer.buildSpan(operationName).
+        asChildOf(new WavefrontSpanContext(UUID.randomUUID(), UUID.randomUUID())).
+        withTag("customer", "testCustomer").start();
+    span.log("cache miss");
+    span.finish();
+    return SpilledSpan.encode(span);
+  }
+
+  private void append(DiskSpillBuffer buffer, byte[] record) {
+    if (!buffer.append(record)) {
+      // the newest segment is full, create the spare as the sending thread would
+      buffer.maintain();
+      assertTrue(buffer.append(record));
+    }
+  }
+
+  @Test
+  public void testAppendAndPoll() throws IOException {
+    DiskSpillBuffer buffer = new DiskSpillBuffer(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    assertTrue(buffer.isEmpty());
+    // enough records to span several segments
+    for (int i = 0; i < 100; i++) {
+      append(buffer, record("op" + i));
+    }
+    assertEquals(100, buffer.size());
+    assertTrue(directory.listFiles().length > 1);
+    for (int i = 0; i < 100; i++) {
+      SpilledSpan span = buffer.poll();
+      assertEquals("op" + i, span.getOperationName());
+      assertEquals(1, span.getParents().size());
+      assertTrue(span.getTags().contains(Pair.of("customer", "testCustomer")));
+      assertEquals(1, span.getSpanLogs().size());
+    }
+    assertNull(buffer.poll());
+    assertTrue(buffer.isEmpty());
+    // read segments are deleted, the newest one is kept for writing
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void testRejectsWhenSpareIsNotReady() throws IOException {
+    DiskSpillBuffer buffer = new DiskSpillBuffer(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    int appended = 0;
+    while (buffer.append(record("op" + appended))) {
+      appended++;
+    }
+    // the spare created on opening was used up by the first record
+    assertEquals(1, directory.listFiles().length);
+    buffer.maintain();
+    assertEquals(2, directory.listFiles().length);
+    assertTrue(buffer.append(record("op" + appended)));
+    assertEquals(appended + 1, buffer.size());
+  }
+
+  @Test
+  public void testSkipsCorruptSegment() throws IOException {
+    DiskSpillBuffer buffer = new DiskSpillBuffer(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    byte[] first = record("op0");
+    append(buffer, first);
+    append(buffer, record("op1"));
+    append(buffer, record("op2"));
+    buffer.close();
+
+    // overwrite the length of the operation name of the second record, after its ids and times
+    File segment = directory.listFiles((dir, name) -> name.endsWith("00.spill"))[0];
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.seek(8 + 4 + first.length + 4 + 48);
+      file.writeInt(Integer.MAX_VALUE);
+    }
+
+    DiskSpillBuffer reopened = new DiskSpillBuffer(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    assertEquals(3, reopened.size());
+    assertEquals("op0", reopened.poll().getOperationName());
+    assertNull(reopened.poll());
+    assertTrue(reopened.isEmpty());
+  }
+
+  @Test
+  public void testClose() throws IOException {
+    DiskSpillBuffer buffer = new DiskSpillBuffer(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    append(buffer, record("op0"));
+    buffer.close();
+    assertFalse(buffer.append(record("op1")));
+    assertNull(buffer.poll());
+    // the unused spare is deleted
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void testEvictsOldestSegment() throws IOException {
+    DiskSpillBuffer buffer = new DiskSpillBuffer(directory, 2 * SEGMENT_SIZE, SEGMENT_SIZE);
+    for (int i = 0; i < 100; i++) {
+      append(buffer, record("op" + i));
+    }
+    // the spare is created only once the byte cap allows it
+    assertEquals(2, directory.listFiles().length);
+    assertTrue(buffer.size() < 100);
+    // the newest spans are kept
+    long size = buffer.size();
+    SpilledSpan span = buffer.poll();
+    assertEquals("op" + (100 - size), span.getOperationName());
+    assertFalse(buffer.append(new byte[SEGMENT_SIZE]));
+  }
+
+  @Test
+  public void testReplayAfterReopen() throws IOException {
+    DiskSpillBuffer buffer = new DiskSpillBuffer(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    for (int i = 0; i < 50; i++) {
+      append(buffer, record("op" + i));
+    }
+    for (int i = 0; i < 20; i++) {
+      buffer.poll();
+    }
+    buffer.close();
+
+    DiskSpillBuffer reopened = new DiskSpillBuffer(directory, 10 * SEGMENT_SIZE, SEGMENT_SIZE);
+    assertEquals(30, reopened.size());
+    assertEquals("op20", reopened.poll().getOperationName());
+    append(reopened, record("op50"));
+    for (int i = 21; i <= 50; i++) {
+      assertEquals("op" + i, reopened.poll().getOperationName());
+    }
+    assertNull(reopened.poll());
+  }
+}
@@ -0,0 +1,100 @@
+package com.wavefront.opentracing.reporting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link RingBufferQueue}.
+ */
+public class RingBufferQueueTest {
+
+  @Test
+  public void testCapacity() throws InterruptedException {
+    // capacities that are not a power of two are honored exactly
+    RingBufferQueue<Integer> queue = new RingBufferQueue<>(3, WaitStrategy.BLOCKING);
+    assertTrue(queue.isEmpty());
+    assertEquals(3, queue.remainingCapacity());
+    for (int lap = 0; lap < 3; lap++) {
+      assertTrue(queue.offer(1));
+      assertTrue(queue.offer(2));
+      assertTrue(queue.offer(3));
+      assertFalse(queue.offer(4));
+      assertEquals(3, queue.size());
+      assertEquals(0, queue.remainingCapacity());
+
+      assertEquals(1, (int) queue.poll(0, TimeUnit.MILLISECONDS));
+      List<Integer> drained = new ArrayList<>();
+      assertEquals(2, queue.drainTo(drained, 10));
+      assertEquals(2, (int) drained.get(0));
+      assertEquals(3, (int) drained.get(1));
+      assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+      assertTrue(queue.isEmpty());
+    }
+  }
+
+  @Test
+  public void testBlockingWaitStrategy() throws InterruptedException {
+    testConcurrentProducers(WaitStrategy.BLOCKING);
+  }
+
+  @Test
+  public void testYieldingWaitStrategy() throws InterruptedException {
+    testConcurrentProducers(WaitStrategy.YIELDING);
+  }
+
+  @Test
+  public void testSpinningWaitStrategy() throws InterruptedException {
+    testConcurrentProducers(WaitStrategy.SPINNING);
+  }
+
+  private void testConcurrentProducers(WaitStrategy waitStrategy) throws InterruptedException {
+    int producers = 4;
+    int perProducer = 20000;
+    RingBufferQueue<Integer> queue = new RingBufferQueue<>(128, waitStrategy);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      int base = p * perProducer;
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < perProducer; i++) {
+          while (!queue.offer(base + i)) {
+            Thread.yield();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    // every element is received exactly once
+    BitSet received = new BitSet(producers * perProducer);
+    List<Integer> batch = new ArrayList<>();
+    int count = 0;
+    while (count < producers * perProducer) {
+      Integer first = queue.poll(5, TimeUnit.SECONDS);
+      assertTrue(first != null, "timed out waiting for elements");
+      batch.add(first);
+      queue.drainTo(batch, 31);
+      for (Integer e : batch) {
+        assertFalse(received.get(e));
+        received.set(e);
+      }
+      count += batch.size();
+      batch.clear();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(producers * perProducer, received.cardinality());
+    assertTrue(queue.isEmpty());
+  }
+}
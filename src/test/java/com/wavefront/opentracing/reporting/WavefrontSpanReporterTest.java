@@ -0,0 +1,106 @@
+package com.wavefront.opentracing.reporting;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.sdk.common.WavefrontSender;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+/**
+ * Tests for {@link WavefrontSpanReporter}.
+ */
+public class WavefrontSpanReporterTest {
+
+  private static final int NUM_SPANS = 500;
+
+  private void reportSpans(WavefrontSpanReporter.Builder reporterBuilder) throws IOException {
+    WavefrontSender wfSender = createNiceMock(WavefrontSender.class);
+    wfSender.sendSpan(anyString(), anyLong(), anyLong(), eq(DEFAULT_SOURCE), anyObject(),
+        anyObject(), anyObject(), anyObject(), anyObject(), anyObject());
+    expectLastCall().times(NUM_SPANS);
+    replay(wfSender);
+
+    WavefrontSpanReporter reporter = reporterBuilder.withSource(DEFAULT_SOURCE).build(wfSender);
+    WavefrontTracer tracer = new WavefrontTracer.Builder(reporter, buildApplicationTags()).
+        excludeJvmMetrics().build();
+    for (int i = 0; i < NUM_SPANS; i++) {
+      tracer.buildSpan("testOp").start().finish();
+    }
+    // closing flushes all buffered spans
+    tracer.close();
+    verify(wfSender);
+  }
+
+  @Test
+  public void testSingleSendingThread() throws IOException {
+    reportSpans(new WavefrontSpanReporter.Builder());
+  }
+
+  @Test
+  public void testBatchedSending() throws IOException {
+    reportSpans(new WavefrontSpanReporter.Builder().
+        withSendingThreads(4).
+        withMaxBatchSize(16).
+        withBatchLingerMillis(5));
+  }
+
+  @Test
+  public void testRingBufferQueue() throws IOException {
+    reportSpans(new WavefrontSpanReporter.Builder().
+        withRingBufferQueue(WaitStrategy.BLOCKING).
+        withSendingThreads(2));
+  }
+
+  @Test
+  public void testDiskSpill() throws IOException, InterruptedException {
+    File directory = Files.createTempDirectory("spill").toFile();
+    AtomicInteger sent = new AtomicInteger();
+    WavefrontSender wfSender = createNiceMock(WavefrontSender.class);
+    wfSender.sendSpan(anyString(), anyLong(), anyLong(), eq(DEFAULT_SOURCE), anyObject(),
+        anyObject(), anyObject(), anyObject(), anyObject(), anyObject());
+    expectLastCall().andAnswer(() -> {
+      sent.incrementAndGet();
+      return null;
+    }).times(NUM_SPANS);
+    replay(wfSender);
+
+    // a single slot in memory, so that most spans are spilled and replayed
+    WavefrontSpanReporter reporter = new WavefrontSpanReporter.Builder().
+        withSource(DEFAULT_SOURCE).
+        withMaxQueueSize(1).
+        withDiskSpill(directory, 1024 * 1024).
+        withSpillReplayRate(100_000).
+        build(wfSender);
+    WavefrontTracer tracer = new WavefrontTracer.Builder(reporter, buildApplicationTags()).
+        excludeJvmMetrics().build();
+    for (int i = 0; i < NUM_SPANS; i++) {
+      tracer.buildSpan("testOp").start().finish();
+    }
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (sent.get() < NUM_SPANS && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    tracer.close();
+    verify(wfSender);
+
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+}
@@ -0,0 +1,84 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.ConsoleReporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link AdaptiveSampler}.
+ */
+public class AdaptiveSamplerTest {
+
+  @Test
+  public void testRateFollowsPressure() {
+    AtomicReference<Double> pressure = new AtomicReference<>(0.0);
+    // adjust on every call
+    AdaptiveSampler sampler = new AdaptiveSampler(pressure::get, 0.5, 0.8, 0.1, 0);
+    sampler.sample("testOp", 1L, 0);
+    assertEquals(1.0, sampler.getRate());
+
+    pressure.set(0.9);
+    sampler.sample("testOp", 1L, 0);
+    assertEquals(0.5, sampler.getRate(), 1e-6);
+    for (int i = 0; i < 10; i++) {
+      sampler.sample("testOp", 1L, 0);
+    }
+    assertEquals(0.1, sampler.getRate(), 1e-6);
+
+    // held between the watermarks
+    pressure.set(0.6);
+    sampler.sample("testOp", 1L, 0);
+    assertEquals(0.1, sampler.getRate(), 1e-6);
+
+    pressure.set(0.2);
+    sampler.sample("testOp", 1L, 0);
+    assertEquals(0.15, sampler.getRate(), 1e-6);
+    for (int i = 0; i < 100; i++) {
+      sampler.sample("testOp", 1L, 0);
+    }
+    assertEquals(1.0, sampler.getRate());
+  }
+
+  @Test
+  public void testTraceConsistentDecisions() {
+    AtomicReference<Double> pressure = new AtomicReference<>(1.0);
+    AdaptiveSampler sampler = new AdaptiveSampler(pressure::get, 0.5, 0.8, 0.25, 0);
+    sampler.sample("testOp", 0L, 0);
+    sampler.sample("testOp", 0L, 0);
+    assertEquals(0.25, sampler.getRate(), 1e-6);
+    pressure.set(0.6);
+
+    int sampled = 0;
+    for (long traceId = 0; traceId < 1_000_000; traceId += 997) {
+      boolean decision = sampler.sample("testOp", traceId, 0);
+      assertEquals(decision, sampler.sample("otherOp", traceId, 0));
+      if (decision) {
+        sampled++;
+      }
+    }
+    assertEquals(0.25, sampled / (1_000_000 / 997.0), 0.01);
+    assertTrue(sampler.sample("testOp", 1L, 0));
+    assertFalse(sampler.sample("testOp", 999_999L, 0));
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveSampler(() -> 0.0, 0.8, 0.5, 0.1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new AdaptiveSampler(() -> 0.0, 0.5, 0.8, 1.5));
+    assertThrows(IllegalStateException.class,
+        () -> new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+            buildApplicationTags()).withAdaptiveSampling(0.5, 0.8, 0.1));
+  }
+}
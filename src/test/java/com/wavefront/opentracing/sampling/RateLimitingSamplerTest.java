@@ -0,0 +1,104 @@
+package com.wavefront.opentracing.sampling;
+
+import com.wavefront.opentracing.WavefrontSpan;
+import com.wavefront.opentracing.WavefrontTracer;
+import com.wavefront.opentracing.reporting.ConsoleReporter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.opentracing.Span;
+
+import static com.wavefront.opentracing.Utils.buildApplicationTags;
+import static com.wavefront.opentracing.common.Constants.DEFAULT_SOURCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link RateLimitingSampler}.
+ */
+public class RateLimitingSamplerTest {
+
+  private static int sampled(RateLimitingSampler sampler, String operationName, int spans) {
+    int sampled = 0;
+    for (int i = 0; i < spans; i++) {
+      if (sampler.sample(operationName, i, 0)) {
+        sampled++;
+      }
+    }
+    return sampled;
+  }
+
+  @Test
+  public void testRatePerOperation() {
+    AtomicLong now = new AtomicLong();
+    Map<String, Double> rates = new HashMap<>();
+    rates.put("hotOp", 10.0);
+    rates.put("mutedOp", 0.0);
+    RateLimitingSampler sampler = new RateLimitingSampler(100, rates, 10, now::get);
+
+    // a full bucket admits one second worth of spans
+    assertEquals(10, sampled(sampler, "hotOp", 1000));
+    assertEquals(100, sampled(sampler, "otherOp", 1000));
+    assertEquals(0, sampled(sampler, "mutedOp", 1000));
+
+    // the buckets refill at their rate
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    assertEquals(5, sampled(sampler, "hotOp", 1000));
+    assertEquals(50, sampled(sampler, "otherOp", 1000));
+
+    // but hold at most one second worth of spans
+    now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+    assertEquals(10, sampled(sampler, "hotOp", 1000));
+  }
+
+  @Test
+  public void testBoundedOperations() {
+    AtomicLong now = new AtomicLong();
+    RateLimitingSampler sampler = new RateLimitingSampler(1, Collections.emptyMap(), 2,
+        now::get);
+    assertEquals(1, sampled(sampler, "op1", 10));
+    assertEquals(1, sampled(sampler, "op2", 10));
+    // operations beyond the bound share a single bucket
+    assertEquals(1, sampled(sampler, "op3", 10));
+    assertEquals(0, sampled(sampler, "op4", 10));
+  }
+
+  @Test
+  public void testInvalidRate() {
+    assertThrows(IllegalArgumentException.class, () -> new RateLimitingSampler(-1));
+    assertThrows(IllegalArgumentException.class, () -> new RateLimitingSampler(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> new RateLimitingSampler(1,
+        Collections.singletonMap("op", Double.POSITIVE_INFINITY)));
+  }
+
+  @Test
+  public void testInheritedDecision() {
+    AtomicLong now = new AtomicLong();
+    WavefrontTracer tracer = new WavefrontTracer.Builder(new ConsoleReporter(DEFAULT_SOURCE),
+        buildApplicationTags()).withSampler(new RateLimitingSampler(1, Collections.emptyMap(),
+        10, now::get)).build();
+    Span sampledRoot = tracer.buildSpan("op").start();
+    Span droppedRoot = tracer.buildSpan("op").start();
+    assertTrue(((WavefrontSpan) sampledRoot).context().getSamplingDecision());
+    assertFalse(((WavefrontSpan) droppedRoot).context().getSamplingDecision());
+
+    // child spans follow their trace, whatever the remaining budget
+    WavefrontSpan child = (WavefrontSpan) tracer.buildSpan("op").asChildOf(sampledRoot).start();
+    assertTrue(child.context().getSamplingDecision());
+    child = (WavefrontSpan) tracer.buildSpan("op").asChildOf(droppedRoot).start();
+    assertFalse(child.context().getSamplingDecision());
+
+    // the budget is not consulted again when the span finishes, even once it refilled
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    child.finish();
+    assertFalse(child.context().getSamplingDecision());
+  }
+}